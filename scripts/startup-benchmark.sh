@@ -0,0 +1,85 @@
+#!/usr/bin/env bash
+#
+# Measures the time to ready, and to the first message consumed, of the demo application across launch variants:
+# the executable jar, the unpacked jar, the unpacked jar with a class data sharing (CDS) archive, and the same with the
+# Spring AOT initialisation.
+#
+# Build with `mvn -Paot package` and start the docker-compose containers first.  A training run, which exits once it has
+# consumed its first message, creates the CDS archive and the consumer group before the measured runs.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [extra application arguments...]
+#   e.g. scripts/startup-benchmark.sh 5 --spring.profiles.active=fast-start
+#
+set -euo pipefail
+
+RUNS=${1:-5}
+shift || true
+APP_ARGS=("$@")
+
+JAR=target/kafka-spring-retry-topics-1.0.0.jar
+EXTRACTED=target/extracted
+ARCHIVE=target/application.jsa
+CLASSPATH="$EXTRACTED/BOOT-INF/classes:$EXTRACTED/BOOT-INF/lib/*"
+MAIN_CLASS=demo.DemoApplication
+TIMEOUT_SECONDS=120
+
+produce_create_item() {
+    local id
+    id=$(cat /proc/sys/kernel/random/uuid)
+    echo "{\"id\": \"$id\", \"name\": \"startup-benchmark\"}" | \
+        docker exec -i kafka kafka-console-producer --topic create-item --bootstrap-server kafka:29092 > /dev/null
+}
+
+wait_for_log() {
+    local log=$1 pattern=$2
+    for _ in $(seq $((TIMEOUT_SECONDS * 10))); do
+        grep -q "$pattern" "$log" && return 0
+        sleep 0.1
+    done
+    echo "Timed out waiting for '$pattern' in $log" >&2
+    return 1
+}
+
+millis_from_log() {
+    grep -o "$2 [0-9]* ms" "$1" | grep -o '[0-9]*' | head -1
+}
+
+train() {
+    echo "Training run, creating $ARCHIVE"
+    rm -rf "$EXTRACTED" "$ARCHIVE"
+    mkdir -p "$EXTRACTED"
+    (cd "$EXTRACTED" && jar -xf "../../$JAR")
+    local log=target/startup-training.log
+    java -XX:ArchiveClassesAtExit="$ARCHIVE" -Dspring.aot.enabled=true -cp "$CLASSPATH" "$MAIN_CLASS" \
+        --demo.startup.exitAfterFirstMessage=true "${APP_ARGS[@]}" > "$log" 2>&1 &
+    local pid=$!
+    wait_for_log "$log" "Startup: ready"
+    produce_create_item
+    wait "$pid" || true
+    [ -f "$ARCHIVE" ] || { echo "No archive created, see $log" >&2; exit 1; }
+}
+
+measure() {
+    local name=$1
+    shift
+    local total_ready=0 total_first=0
+    for run in $(seq "$RUNS"); do
+        local log="target/startup-$name-$run.log"
+        # Produced before starting, so that the time to the first message is not bounded by when it is sent.
+        produce_create_item
+        "$@" "${APP_ARGS[@]}" > "$log" 2>&1 &
+        local pid=$!
+        wait_for_log "$log" "Startup: first message consumed"
+        kill "$pid"
+        wait "$pid" || true
+        total_ready=$((total_ready + $(millis_from_log "$log" "ready")))
+        total_first=$((total_first + $(millis_from_log "$log" "consumed")))
+    done
+    printf "%-12s ready %6d ms   first message %6d ms\n" "$name" $((total_ready / RUNS)) $((total_first / RUNS))
+}
+
+train
+measure jar java -jar "$JAR"
+measure unpacked java -cp "$CLASSPATH" "$MAIN_CLASS"
+measure cds java -XX:SharedArchiveFile="$ARCHIVE" -cp "$CLASSPATH" "$MAIN_CLASS"
+measure cds-aot java -XX:SharedArchiveFile="$ARCHIVE" -Dspring.aot.enabled=true -cp "$CLASSPATH" "$MAIN_CLASS"
@@ -1,53 +1,289 @@
 package demo;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
+import demo.consumer.ItemJoinConsumer;
+import demo.lifecycle.StartupTimer;
+import demo.retry.RetryTimingRecordInterceptor;
+import demo.state.ItemStateRebalanceListener;
+import demo.tracing.TracingRecordInterceptor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.CompositeRecordInterceptor;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
 
 @Slf4j
-@EntityScan("demo.domain")
 @EnableJpaRepositories("demo.repository")
 @ComponentScan(basePackages = {"demo"})
 @Configuration
 public class DemoConfiguration {
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(final ConsumerFactory<String, String> consumerFactory) {
-        final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory();
+    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(final ConsumerFactory<String, String> consumerFactory,
+                                                                                                 final ItemStateRebalanceListener itemStateRebalanceListener,
+                                                                                                 final RetryTimingRecordInterceptor retryTimingRecordInterceptor,
+                                                                                                 final StartupTimer startupTimer,
+                                                                                                 final TracingRecordInterceptor tracingRecordInterceptor,
+                                                                                                 @Value("${demo.consumer.pollTimeoutMilliseconds}") final long pollTimeoutMilliseconds,
+                                                                                                 @Value("${demo.consumer.pollTimeoutWhilePausedMilliseconds}") final long pollTimeoutWhilePausedMilliseconds,
+                                                                                                 @Value("${demo.consumer.shutdownTimeoutMilliseconds}") final long shutdownTimeoutMilliseconds) {
+        final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setConsumerRebalanceListener(itemStateRebalanceListener);
+        factory.setRecordInterceptor(new CompositeRecordInterceptor<>(startupTimer, retryTimingRecordInterceptor, tracingRecordInterceptor));
+        configurePolling(factory, pollTimeoutMilliseconds, pollTimeoutWhilePausedMilliseconds, shutdownTimeoutMilliseconds);
         return factory;
     }
 
+    /**
+     * For the retry and dead letter topics of the {@code @RetryableTopic} listeners.  As for the main topics, but without
+     * the startup timer or item state store, and with the retry consumers' shorter fetch wait.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> retryTopicContainerFactory(final ConsumerFactory<String, String> retryConsumerFactory,
+                                                                                              final RetryTimingRecordInterceptor retryTimingRecordInterceptor,
+                                                                                              final TracingRecordInterceptor tracingRecordInterceptor,
+                                                                                              @Value("${demo.consumer.pollTimeoutMilliseconds}") final long pollTimeoutMilliseconds,
+                                                                                              @Value("${demo.consumer.pollTimeoutWhilePausedMilliseconds}") final long pollTimeoutWhilePausedMilliseconds,
+                                                                                              @Value("${demo.consumer.shutdownTimeoutMilliseconds}") final long shutdownTimeoutMilliseconds) {
+        final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(retryConsumerFactory);
+        factory.setRecordInterceptor(new CompositeRecordInterceptor<>(retryTimingRecordInterceptor, tracingRecordInterceptor));
+        configurePolling(factory, pollTimeoutMilliseconds, pollTimeoutWhilePausedMilliseconds, shutdownTimeoutMilliseconds);
+        return factory;
+    }
+
+    /**
+     * For the consolidated retry scheduler, where a record that is not yet due fails with a backoff exception that pauses
+     * its partition.  The recoverer rethrows those so that the record is redelivered on resume rather than skipped.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> retrySchedulerContainerFactory(final ConsumerFactory<String, String> retryConsumerFactory,
+                                                                                                  final RetryTimingRecordInterceptor retryTimingRecordInterceptor,
+                                                                                                  final TracingRecordInterceptor tracingRecordInterceptor,
+                                                                                                  @Value("${demo.consumer.pollTimeoutMilliseconds}") final long pollTimeoutMilliseconds,
+                                                                                                  @Value("${demo.consumer.pollTimeoutWhilePausedMilliseconds}") final long pollTimeoutWhilePausedMilliseconds,
+                                                                                                  @Value("${demo.consumer.shutdownTimeoutMilliseconds}") final long shutdownTimeoutMilliseconds) {
+        final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(retryConsumerFactory);
+        factory.setRecordInterceptor(new CompositeRecordInterceptor<>(retryTimingRecordInterceptor, tracingRecordInterceptor));
+        configurePolling(factory, pollTimeoutMilliseconds, pollTimeoutWhilePausedMilliseconds, shutdownTimeoutMilliseconds);
+        final DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, exception) -> {
+            if (SeekUtils.isBackoffException(exception)) {
+                throw (RuntimeException) exception;
+            }
+            log.error("Retry scheduler - error processing record from " + record.topic() + ": " + exception.getMessage());
+        });
+        // As for Spring's retry topics, the seeks are expected so are not logged as errors.
+        errorHandler.setLogLevel(KafkaException.Level.DEBUG);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+
+    /**
+     * For the hot item lane, where an event for an item not yet found is retried in place, with the same backoff as the
+     * retry topics, before being dead lettered to the update item dead letter topic.  The retries hold up the other hot
+     * items on the lane's partition, so the backoff stops at the retry topics' max retry duration as well as their max
+     * attempts, bounding that stall.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> hotKeyLaneContainerFactory(final ConsumerFactory<String, String> consumerFactory,
+                                                                                              final KafkaTemplate<String, String> kafkaTemplate,
+                                                                                              final TracingRecordInterceptor tracingRecordInterceptor,
+                                                                                              @Value("${demo.topics.itemUpdateTopic}") final String itemUpdateTopic,
+                                                                                              @Value("${demo.retry.retryIntervalMilliseconds}") final long retryIntervalMilliseconds,
+                                                                                              @Value("${demo.retry.retryBackoffMultiplier}") final double retryBackoffMultiplier,
+                                                                                              @Value("${demo.retry.maxRetryAttempts}") final int maxRetryAttempts,
+                                                                                              @Value("${demo.retry.maxRetryDurationMilliseconds}") final long maxRetryDurationMilliseconds,
+                                                                                              @Value("${demo.consumer.pollTimeoutMilliseconds}") final long pollTimeoutMilliseconds,
+                                                                                              @Value("${demo.consumer.pollTimeoutWhilePausedMilliseconds}") final long pollTimeoutWhilePausedMilliseconds,
+                                                                                              @Value("${demo.consumer.shutdownTimeoutMilliseconds}") final long shutdownTimeoutMilliseconds) {
+        final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setRecordInterceptor(tracingRecordInterceptor);
+        configurePolling(factory, pollTimeoutMilliseconds, pollTimeoutWhilePausedMilliseconds, shutdownTimeoutMilliseconds);
+        final ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(maxRetryAttempts - 1);
+        backOff.setInitialInterval(retryIntervalMilliseconds);
+        backOff.setMultiplier(retryBackoffMultiplier);
+        final DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, exception) -> new TopicPartition(itemUpdateTopic + "-dlt", -1));
+        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, withMaxElapsedTime(backOff, maxRetryDurationMilliseconds)));
+        return factory;
+    }
+
+    /**
+     * For the create and update item join, consuming batches from both topics, in its own consumer group.  The offsets
+     * are committed by the listener for just the events it has applied, and it is told of rebalances alongside the item
+     * state store.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> itemJoinContainerFactory(final ConsumerFactory<String, String> itemJoinConsumerFactory,
+                                                                                            final ItemStateRebalanceListener itemStateRebalanceListener,
+                                                                                            final ObjectProvider<ItemJoinConsumer> itemJoinConsumer,
+                                                                                            @Value("${demo.consumer.pollTimeoutMilliseconds}") final long pollTimeoutMilliseconds,
+                                                                                            @Value("${demo.consumer.pollTimeoutWhilePausedMilliseconds}") final long pollTimeoutWhilePausedMilliseconds,
+                                                                                            @Value("${demo.consumer.shutdownTimeoutMilliseconds}") final long shutdownTimeoutMilliseconds) {
+        final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(itemJoinConsumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceListeners(itemStateRebalanceListener, itemJoinConsumer));
+        configurePolling(factory, pollTimeoutMilliseconds, pollTimeoutWhilePausedMilliseconds, shutdownTimeoutMilliseconds);
+        return factory;
+    }
+
+    /**
+     * A paused partition is resumed at its retry's due time, but the resumed records are only fetched on the next poll, so
+     * the poll timeouts bound how late a retry can be delivered.
+     *
+     * On shutdown the containers finish processing the records already polled (Spring's default, as stopImmediate is
+     * false), then commit, before closing, so the shutdown timeout must allow for a full poll's worth of records.
+     */
+    private static void configurePolling(final ConcurrentKafkaListenerContainerFactory<String, String> factory,
+                                         final long pollTimeoutMilliseconds, final long pollTimeoutWhilePausedMilliseconds,
+                                         final long shutdownTimeoutMilliseconds) {
+        factory.getContainerProperties().setPollTimeout(pollTimeoutMilliseconds);
+        factory.getContainerProperties().setPollTimeoutWhilePaused(Duration.ofMillis(pollTimeoutWhilePausedMilliseconds));
+        factory.getContainerProperties().setShutdownTimeout(shutdownTimeoutMilliseconds);
+    }
+
     @Bean
     public KafkaTemplate<String, String> kafkaTemplate(final ProducerFactory<String, String> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
 
+    /**
+     * The listeners share the one consumer group, so the cooperative assignor is used, in order that a listener's
+     * consumers joining or leaving, as when the autoscaler restarts its container, only moves that listener's partitions,
+     * rather than revoking every partition in the group.
+     */
     @Bean
     public ConsumerFactory<String, String> consumerFactory(@Value("${kafka.bootstrap-servers}") final String bootstrapServers) {
+        return new DefaultKafkaConsumerFactory<>(consumerConfig(bootstrapServers));
+    }
+
+    /**
+     * For the retry topic consumers.  Once a paused retry partition is resumed, the broker may hold the next fetch for up
+     * to fetch.max.wait.ms before returning the due record, so they wait less than the Kafka default of 500 milliseconds.
+     * The dead letter publisher's partition lookup on the consumer also queues behind the fetch in flight.
+     *
+     * A separate consumer factory, as the container factories do not pass on their Kafka consumer properties.
+     */
+    @Bean
+    public ConsumerFactory<String, String> retryConsumerFactory(@Value("${kafka.bootstrap-servers}") final String bootstrapServers,
+                                                                @Value("${demo.consumer.retryFetchMaxWaitMilliseconds}") final int retryFetchMaxWaitMilliseconds) {
+        final Map<String, Object> config = consumerConfig(bootstrapServers);
+        config.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, retryFetchMaxWaitMilliseconds);
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    /**
+     * For the create and update item join.  The range assignor gives each consumer the same partitions of both topics.
+     * It is an eager assignor, and every member of a group must share an assignor, so the join has its own group.
+     */
+    @Bean
+    public ConsumerFactory<String, String> itemJoinConsumerFactory(@Value("${kafka.bootstrap-servers}") final String bootstrapServers) {
+        final Map<String, Object> config = consumerConfig(bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, "demo-join");
+        config.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    /**
+     * Call each of the rebalance listeners in turn, as a container takes just one.  The others are looked up on each
+     * rebalance, as they may be the listener beans the container is created for.
+     */
+    private static ConsumerAwareRebalanceListener rebalanceListeners(final ConsumerAwareRebalanceListener listener,
+                                                                     final ObjectProvider<? extends ConsumerAwareRebalanceListener> others) {
+        return new ConsumerAwareRebalanceListener() {
+            private Stream<ConsumerAwareRebalanceListener> listeners() {
+                return Stream.concat(Stream.of(listener), others.stream());
+            }
+
+            @Override
+            public void onPartitionsRevokedBeforeCommit(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+                listeners().forEach(l -> l.onPartitionsRevokedBeforeCommit(consumer, partitions));
+            }
+
+            @Override
+            public void onPartitionsRevokedAfterCommit(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+                listeners().forEach(l -> l.onPartitionsRevokedAfterCommit(consumer, partitions));
+            }
+
+            @Override
+            public void onPartitionsLost(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+                listeners().forEach(l -> l.onPartitionsLost(consumer, partitions));
+            }
+
+            @Override
+            public void onPartitionsAssigned(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+                listeners().forEach(l -> l.onPartitionsAssigned(consumer, partitions));
+            }
+        };
+    }
+
+    /**
+     * Stop the backoff once the next retry would take the total backoff past the max elapsed time, as the max elapsed
+     * time cannot be set on an ExponentialBackOffWithMaxRetries.
+     */
+    private static BackOff withMaxElapsedTime(final BackOff backOff, final long maxElapsedMilliseconds) {
+        return () -> {
+            final BackOffExecution execution = backOff.start();
+            return new BackOffExecution() {
+                private long elapsed;
+
+                @Override
+                public long nextBackOff() {
+                    final long next = execution.nextBackOff();
+                    if (next == STOP || elapsed + next > maxElapsedMilliseconds) {
+                        return STOP;
+                    }
+                    elapsed += next;
+                    return next;
+                }
+            };
+        };
+    }
+
+    private static Map<String, Object> consumerConfig(final String bootstrapServers) {
         final Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         config.put(ConsumerConfig.GROUP_ID_CONFIG, "demo");
-        return new DefaultKafkaConsumerFactory<>(config);
+        config.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName());
+        return config;
     }
 
     @Bean
@@ -0,0 +1,40 @@
+package demo.autoscaling;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The inputs and outcome of the latest concurrency evaluation of a listener container.
+ */
+@Builder
+@Value
+public class ConcurrencyDecision {
+
+    public enum Action { HOLD, SCALE_UP, SCALE_DOWN, COOLDOWN }
+
+    String listenerId;
+
+    String tier;
+
+    List<String> topics;
+
+    /**
+     * Records behind on the partitions that are not paused.
+     */
+    long lag;
+
+    /**
+     * Mean listener processing time over the last interval, or null if no records were processed.
+     */
+    Double meanProcessingMillis;
+
+    int concurrency;
+
+    int desiredConcurrency;
+
+    Action action;
+
+    long timestamp;
+}
@@ -0,0 +1,329 @@
+package demo.autoscaling;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adjusts the concurrency of each listener container at runtime, from its consumer lag and listener processing time.
+ *
+ * The concurrency needed is that which would clear the current lag within the target drain time, at the mean processing
+ * time over the last interval.  Scaling up goes straight to that concurrency, scaling down is one consumer at a time, and
+ * a container is left alone for the cooldown after each change, as the change restarts its consumers and so rebalances
+ * its partitions.  Lag on paused partitions is not counted, as on the retry topics that is events waiting until due.
+ *
+ * The main topic listeners and the retry and dead letter listeners have separate bounds, so each retry tier is scaled on
+ * its own lag rather than sharing the main topic's concurrency.
+ *
+ * Started after, and stopped before, the listener containers.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "demo.autoscaling.enabled", havingValue = "true")
+public class ListenerConcurrencyController implements SmartLifecycle {
+
+    static final String MAIN_TIER = "main";
+
+    static final String RETRY_TIER = "retry";
+
+    static final String CONCURRENCY_METRIC = "demo.autoscaling.concurrency";
+
+    static final String LAG_METRIC = "demo.autoscaling.lag";
+
+    /**
+     * The listener timer recorded by the containers, tagged with the name of each child container.
+     */
+    private static final String LISTENER_TIMER = "spring.kafka.listener";
+
+    private static final String RECORDS_LAG = "records-lag";
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final MeterRegistry meterRegistry;
+    private final String retryTopic;
+    private final long intervalMilliseconds;
+    private final long cooldownMilliseconds;
+    private final long targetDrainMilliseconds;
+    private final int mainMinConcurrency;
+    private final int mainMaxConcurrency;
+    private final int retryMinConcurrency;
+    private final int retryMaxConcurrency;
+
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final Map<String, ListenerState> states = new ConcurrentHashMap<>();
+    private final Set<String> restarting = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private ScheduledFuture<?> evaluation;
+
+    public ListenerConcurrencyController(final KafkaListenerEndpointRegistry registry,
+                                         final MeterRegistry meterRegistry,
+                                         @Value("${demo.topics.retryTopic}") final String retryTopic,
+                                         @Value("${demo.autoscaling.intervalMilliseconds}") final long intervalMilliseconds,
+                                         @Value("${demo.autoscaling.cooldownMilliseconds}") final long cooldownMilliseconds,
+                                         @Value("${demo.autoscaling.targetDrainMilliseconds}") final long targetDrainMilliseconds,
+                                         @Value("${demo.autoscaling.main.minConcurrency}") final int mainMinConcurrency,
+                                         @Value("${demo.autoscaling.main.maxConcurrency}") final int mainMaxConcurrency,
+                                         @Value("${demo.autoscaling.retry.minConcurrency}") final int retryMinConcurrency,
+                                         @Value("${demo.autoscaling.retry.maxConcurrency}") final int retryMaxConcurrency) {
+        this.registry = registry;
+        this.meterRegistry = meterRegistry;
+        this.retryTopic = retryTopic;
+        this.intervalMilliseconds = intervalMilliseconds;
+        this.cooldownMilliseconds = cooldownMilliseconds;
+        this.targetDrainMilliseconds = targetDrainMilliseconds;
+        this.mainMinConcurrency = mainMinConcurrency;
+        this.mainMaxConcurrency = mainMaxConcurrency;
+        this.retryMinConcurrency = retryMinConcurrency;
+        this.retryMaxConcurrency = retryMaxConcurrency;
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        this.taskScheduler.setThreadNamePrefix("concurrency-");
+        this.taskScheduler.initialize();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        evaluation = taskScheduler.scheduleWithFixedDelay(this::evaluate, Instant.now().plusMillis(intervalMilliseconds),
+                Duration.ofMillis(intervalMilliseconds));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (evaluation != null) {
+            evaluation.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE + 100;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        taskScheduler.shutdown();
+    }
+
+    /**
+     * The latest decision for each listener container, by listener id.
+     */
+    public Map<String, ConcurrencyDecision> getDecisions() {
+        final Map<String, ConcurrencyDecision> decisions = new TreeMap<>();
+        states.forEach((listenerId, state) -> {
+            if (state.decision != null) {
+                decisions.put(listenerId, state.decision);
+            }
+        });
+        return Collections.unmodifiableMap(decisions);
+    }
+
+    /**
+     * Whether the listener container is stopped only while its concurrency is changed, and is about to be started again.
+     */
+    public boolean isRestarting(final String listenerId) {
+        return restarting.contains(listenerId);
+    }
+
+    void evaluate() {
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            // A container being restarted is not running, so is only evaluated again once restarted.
+            if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrentContainer && container.isRunning()) {
+                try {
+                    evaluate(concurrentContainer);
+                } catch (Exception e) {
+                    log.warn("Failed to evaluate concurrency of listener {}: {}", container.getListenerId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void evaluate(final ConcurrentMessageListenerContainer<?, ?> container) {
+        final String listenerId = container.getListenerId();
+        final ListenerState state = states.computeIfAbsent(listenerId, id -> register(container));
+        final long now = System.currentTimeMillis();
+        final boolean retryTier = isRetryTier(container);
+        final int current = container.getConcurrency();
+        final long lag = lag(container);
+        final Double meanProcessingMillis = state.meanProcessingMillis(listenerTimers(listenerId));
+        final int desired = desiredConcurrency(lag, meanProcessingMillis, targetDrainMilliseconds, current,
+                retryTier ? retryMinConcurrency : mainMinConcurrency,
+                retryTier ? retryMaxConcurrency : mainMaxConcurrency,
+                container.getAssignedPartitions().size());
+
+        final ConcurrencyDecision.Action action;
+        if (desired == current) {
+            action = ConcurrencyDecision.Action.HOLD;
+        } else if (now - state.lastChange < cooldownMilliseconds) {
+            action = ConcurrencyDecision.Action.COOLDOWN;
+        } else {
+            action = desired > current ? ConcurrencyDecision.Action.SCALE_UP : ConcurrencyDecision.Action.SCALE_DOWN;
+            state.lastChange = now;
+            log.info("Scaling listener {} from {} to {} consumers - lag {}, mean processing time {} ms", listenerId, current, desired, lag, meanProcessingMillis);
+            restart(container, desired);
+        }
+        state.lag = lag;
+        state.decision = ConcurrencyDecision.builder()
+                .listenerId(listenerId)
+                .tier(retryTier ? RETRY_TIER : MAIN_TIER)
+                .topics(Arrays.asList(container.getContainerProperties().getTopics()))
+                .lag(lag)
+                .meanProcessingMillis(meanProcessingMillis)
+                .concurrency(current)
+                .desiredConcurrency(desired)
+                .action(action)
+                .timestamp(now)
+                .build();
+    }
+
+    /**
+     * The concurrency only takes effect when the container starts, so it is stopped, once its consumers have finished
+     * processing the records already polled, and started again.
+     */
+    private void restart(final ConcurrentMessageListenerContainer<?, ?> container, final int concurrency) {
+        restarting.add(container.getListenerId());
+        container.stop(() -> taskScheduler.execute(() -> {
+            try {
+                container.setConcurrency(concurrency);
+                if (running) {
+                    container.start();
+                }
+            } finally {
+                restarting.remove(container.getListenerId());
+            }
+        }));
+    }
+
+    /**
+     * The consumers needed to clear the lag within the target drain time, bounded by the tier's configured concurrency
+     * and, as any more consumers would be idle, the container's partitions.
+     *
+     * @param meanProcessingMillis null if no records were processed over the interval, when the concurrency is held
+     * @param partitions the partitions assigned to the container, or 0 if not known
+     */
+    static int desiredConcurrency(final long lag, final Double meanProcessingMillis, final long targetDrainMilliseconds,
+                                  final int current, final int min, final int max, final int partitions) {
+        final int needed;
+        if (lag == 0) {
+            needed = min;
+        } else if (meanProcessingMillis == null) {
+            needed = current;
+        } else {
+            needed = (int) Math.min(Integer.MAX_VALUE, Math.ceil(lag * meanProcessingMillis / targetDrainMilliseconds));
+        }
+        final int upper = partitions > 0 ? Math.max(min, Math.min(max, partitions)) : max;
+        final int target = Math.max(min, Math.min(upper, needed));
+        if (target < current) {
+            // Step down gradually, as a lull in the lag is not necessarily a lull in the traffic.
+            return Math.max(target, Math.min(current - 1, upper));
+        }
+        return target;
+    }
+
+    /**
+     * Spring's retry and dead letter topic listeners are created with the id of the main listener they retry for, as is
+     * the consolidated retry topic's listener with the retry topic.
+     */
+    private boolean isRetryTier(final MessageListenerContainer container) {
+        final String mainListenerId = container.getMainListenerId();
+        return (mainListenerId != null && !mainListenerId.equals(container.getListenerId()))
+                || Arrays.asList(container.getContainerProperties().getTopics()).contains(retryTopic);
+    }
+
+    /**
+     * The sum of the records-lag of the container's partitions, excluding those that are paused.
+     */
+    private static long lag(final MessageListenerContainer container) {
+        long lag = 0;
+        for (Map<MetricName, ? extends Metric> metrics : container.metrics().values()) {
+            for (Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+                final MetricName name = metric.getKey();
+                if (RECORDS_LAG.equals(name.name()) && name.tags().containsKey("partition")) {
+                    final TopicPartition partition = new TopicPartition(name.tags().get("topic"), Integer.parseInt(name.tags().get("partition")));
+                    final Object value = metric.getValue().metricValue();
+                    if (!container.isPartitionPaused(partition) && value instanceof Double records && !records.isNaN()) {
+                        lag += records.longValue();
+                    }
+                }
+            }
+        }
+        return lag;
+    }
+
+    private Iterable<Timer> listenerTimers(final String listenerId) {
+        return meterRegistry.find(LISTENER_TIMER)
+                .tagKeys("name")
+                .timers()
+                .stream()
+                .filter(timer -> timer.getId().getTag("name").startsWith(listenerId + "-"))
+                .toList();
+    }
+
+    private ListenerState register(final ConcurrentMessageListenerContainer<?, ?> container) {
+        final ListenerState state = new ListenerState();
+        Gauge.builder(CONCURRENCY_METRIC, container, ConcurrentMessageListenerContainer::getConcurrency)
+                .tag("listener", container.getListenerId())
+                .register(meterRegistry);
+        Gauge.builder(LAG_METRIC, state, s -> s.lag)
+                .tag("listener", container.getListenerId())
+                .register(meterRegistry);
+        return state;
+    }
+
+    private static class ListenerState {
+
+        private long lastCount;
+        private double lastTotalMillis;
+        private long lastChange;
+        private volatile long lag;
+        private volatile ConcurrencyDecision decision;
+
+        /**
+         * The mean processing time of the records processed since the previous evaluation.
+         */
+        private Double meanProcessingMillis(final Iterable<Timer> timers) {
+            long count = 0;
+            double totalMillis = 0;
+            for (Timer timer : timers) {
+                count += timer.count();
+                totalMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+            }
+            final long processed = count - lastCount;
+            final double processedMillis = totalMillis - lastTotalMillis;
+            lastCount = count;
+            lastTotalMillis = totalMillis;
+            // The child container timers are replaced when the container is restarted, so the totals can drop.
+            return processed > 0 && processedMillis >= 0 ? processedMillis / processed : null;
+        }
+    }
+}
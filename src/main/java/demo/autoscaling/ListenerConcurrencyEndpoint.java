@@ -0,0 +1,26 @@
+package demo.autoscaling;
+
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the latest concurrency decision for each listener container at {@code /actuator/concurrency}.
+ */
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "concurrency")
+@ConditionalOnProperty(name = "demo.autoscaling.enabled", havingValue = "true")
+public class ListenerConcurrencyEndpoint {
+
+    private final ListenerConcurrencyController controller;
+
+    @ReadOperation
+    public Map<String, ConcurrencyDecision> decisions() {
+        return controller.getDecisions();
+    }
+}
@@ -3,11 +3,16 @@ package demo.consumer;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import demo.event.CreateItem;
+import demo.hotkey.HotKeyTracker;
 import demo.mapper.JsonMapper;
 import demo.service.ItemService;
+import demo.state.ItemStateStore;
+import demo.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
@@ -18,13 +23,21 @@ public class CreateItemConsumer {
 
     final AtomicInteger counter = new AtomicInteger();
     final ItemService itemService;
+    final HotKeyTracker hotKeyTracker;
+    final Tracer tracer;
+    final ItemStateStore itemStateStore;
 
-    @KafkaListener(topics = "#{'${demo.topics.itemCreateTopic}'}", containerFactory = "kafkaListenerContainerFactory")
-    public void listen(@Payload final String payload) {
+    @KafkaListener(topics = "#{'${demo.topics.itemCreateTopic}'}", containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{!${demo.join.enabled:false}}")
+    public void listen(@Payload final String payload,
+                       @Header(KafkaHeaders.RECEIVED_TOPIC) final String topic,
+                       @Header(KafkaHeaders.RECEIVED_PARTITION) final int partition) {
         counter.getAndIncrement();
         log.info("Create Item Consumer: Received message [" +counter.get()+ "] - payload: " + payload);
         try {
-            CreateItem event = JsonMapper.readFromJson(payload, CreateItem.class);
+            CreateItem event = tracer.trace("deserialize", () -> JsonMapper.readFromJson(payload, CreateItem.class));
+            hotKeyTracker.record(topic, partition, event.getId());
+            itemStateStore.checkPartition(event.getId(), partition);
             itemService.createItem(event);
         } catch (Exception e) {
             log.error("Create item - error processing message: " + e.getMessage());
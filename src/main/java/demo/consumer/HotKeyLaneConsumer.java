@@ -0,0 +1,29 @@
+package demo.consumer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes the update events of hot items moved to the hot item lane.  Retries are in place, holding up only this lane,
+ * before the event is dead lettered to the update item dead letter topic.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+@ConditionalOnProperty(name = "demo.hotkey.lane.enabled", havingValue = "true")
+public class HotKeyLaneConsumer {
+
+    private final UpdateItemConsumer updateItemConsumer;
+
+    static final String LISTENER_ID = "hot-key-lane";
+
+    @KafkaListener(id = LISTENER_ID, topics = "#{'${demo.topics.itemUpdateHotTopic}'}", containerFactory = "hotKeyLaneContainerFactory")
+    public void listen(@Payload final String payload) {
+        log.info("Hot Key Lane Consumer: Received message with payload: " + payload);
+        updateItemConsumer.handleRetry(payload);
+    }
+}
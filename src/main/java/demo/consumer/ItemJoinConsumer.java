@@ -0,0 +1,217 @@
+package demo.consumer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.exception.RetryableMessagingException;
+import demo.hotkey.HotKeyTracker;
+import demo.mapper.JsonMapper;
+import demo.retry.ConsolidatedRetryPublisher;
+import demo.service.ItemService;
+import demo.state.ItemStateStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes the create and update item topics together, with each consumer owning the same partitions of both, and
+ * applies their events merged by timestamp, so that an update is applied after the create it follows without going via
+ * the retry topics.  Replaces the separate create and update item listeners when enabled.
+ *
+ * An update is held back by the reorder window relative to the creates: it is only applied once the create partition
+ * has been consumed up to the update's timestamp plus the window, or is caught up and the window has passed.  Until
+ * then the update partition is sought back to it and paused briefly, while the create partition carries on.  An update
+ * whose item is still not found is a genuine failure, and is retried via the consolidated retry topic.
+ *
+ * Both topics must be keyed by item id, and have the same number of partitions.  The offsets are committed here, for
+ * just the events applied.  The create watermarks of revoked partitions are dropped, as their creates may be consumed
+ * again, or by another consumer, once reassigned.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "demo.join.enabled", havingValue = "true")
+public class ItemJoinConsumer implements ConsumerAwareRebalanceListener {
+
+    static final String LISTENER_ID = "item-join";
+
+    private final ItemService itemService;
+    private final ConsolidatedRetryPublisher consolidatedRetryPublisher;
+    private final HotKeyTracker hotKeyTracker;
+    private final ItemStateStore itemStateStore;
+    private final KafkaListenerEndpointRegistry registry;
+    private final String itemCreateTopic;
+    private final String itemUpdateTopic;
+    private final long reorderWindowMilliseconds;
+    private final long holdMilliseconds;
+
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final ListenerContainerPauseService pauseService;
+
+    /**
+     * The latest create timestamp consumed on each partition.
+     */
+    private final Map<Integer, Long> createWatermarks = new ConcurrentHashMap<>();
+
+    public ItemJoinConsumer(final ItemService itemService,
+                            final ConsolidatedRetryPublisher consolidatedRetryPublisher,
+                            final HotKeyTracker hotKeyTracker,
+                            final ItemStateStore itemStateStore,
+                            final KafkaListenerEndpointRegistry registry,
+                            @Value("${demo.topics.itemCreateTopic}") final String itemCreateTopic,
+                            @Value("${demo.topics.itemUpdateTopic}") final String itemUpdateTopic,
+                            @Value("${demo.join.reorderWindowMilliseconds}") final long reorderWindowMilliseconds,
+                            @Value("${demo.join.holdMilliseconds}") final long holdMilliseconds) {
+        if (!consolidatedRetryPublisher.isEnabled()) {
+            throw new IllegalStateException("demo.join.enabled requires demo.retry.consolidated.enabled, as the update item retry topics are not consumed");
+        }
+        this.itemService = itemService;
+        this.consolidatedRetryPublisher = consolidatedRetryPublisher;
+        this.hotKeyTracker = hotKeyTracker;
+        this.itemStateStore = itemStateStore;
+        this.registry = registry;
+        this.itemCreateTopic = itemCreateTopic;
+        this.itemUpdateTopic = itemUpdateTopic;
+        this.reorderWindowMilliseconds = reorderWindowMilliseconds;
+        this.holdMilliseconds = holdMilliseconds;
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        this.taskScheduler.setThreadNamePrefix("join-resume-");
+        this.taskScheduler.initialize();
+        this.pauseService = new ListenerContainerPauseService(registry, taskScheduler);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        revoke(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        revoke(partitions);
+    }
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = { "#{'${demo.topics.itemCreateTopic}'}", "#{'${demo.topics.itemUpdateTopic}'}" },
+            containerFactory = "itemJoinContainerFactory")
+    public void listen(final List<ConsumerRecord<String, String>> records, final Consumer<?, ?> consumer) {
+        final Map<Integer, List<ConsumerRecord<String, String>>> creates = new TreeMap<>();
+        final Map<Integer, List<ConsumerRecord<String, String>>> updates = new TreeMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            (record.topic().equals(itemCreateTopic) ? creates : updates).computeIfAbsent(record.partition(), p -> new ArrayList<>()).add(record);
+        }
+        final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        final Set<Integer> partitions = new TreeSet<>(creates.keySet());
+        partitions.addAll(updates.keySet());
+        for (Integer partition : partitions) {
+            join(partition, creates.getOrDefault(partition, List.of()), updates.getOrDefault(partition, List.of()), consumer, offsets);
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    /**
+     * Apply the events of a partition of each topic in timestamp order, with the updates held back by the reorder window.
+     * An update is only held back when every create consumed precedes it, so no create is left unapplied.
+     */
+    private void join(final int partition, final List<ConsumerRecord<String, String>> creates, final List<ConsumerRecord<String, String>> updates,
+                      final Consumer<?, ?> consumer, final Map<TopicPartition, OffsetAndMetadata> offsets) {
+        final TopicPartition createPartition = new TopicPartition(itemCreateTopic, partition);
+        final TopicPartition updatePartition = new TopicPartition(itemUpdateTopic, partition);
+        long watermark = createWatermarks.getOrDefault(partition, Long.MIN_VALUE);
+        for (ConsumerRecord<String, String> create : creates) {
+            watermark = Math.max(watermark, create.timestamp());
+        }
+        createWatermarks.put(partition, watermark);
+        if (isCaughtUp(consumer, createPartition)) {
+            // No earlier create is still to be consumed, short of one produced late.
+            watermark = Math.max(watermark, System.currentTimeMillis());
+        }
+
+        int c = 0;
+        int u = 0;
+        while (c < creates.size() || u < updates.size()) {
+            if (c < creates.size() && (u == updates.size() || creates.get(c).timestamp() <= updates.get(u).timestamp() + reorderWindowMilliseconds)) {
+                final ConsumerRecord<String, String> create = creates.get(c++);
+                applyCreate(create);
+                offsets.put(createPartition, new OffsetAndMetadata(create.offset() + 1));
+            } else {
+                final ConsumerRecord<String, String> update = updates.get(u);
+                if (update.timestamp() + reorderWindowMilliseconds > watermark) {
+                    log.debug("Holding update item events on {} from offset {} for the reorder window", updatePartition, update.offset());
+                    consumer.seek(updatePartition, update.offset());
+                    pauseService.pausePartition(registry.getListenerContainer(LISTENER_ID), updatePartition, Duration.ofMillis(holdMilliseconds));
+                    return;
+                }
+                u++;
+                applyUpdate(update);
+                offsets.put(updatePartition, new OffsetAndMetadata(update.offset() + 1));
+            }
+        }
+    }
+
+    private void applyCreate(final ConsumerRecord<String, String> record) {
+        log.info("Item Join Consumer: Received create item message with payload: " + record.value());
+        try {
+            final CreateItem event = JsonMapper.readFromJson(record.value(), CreateItem.class);
+            hotKeyTracker.record(record.topic(), record.partition(), event.getId());
+            itemStateStore.checkPartition(event.getId(), record.partition());
+            itemService.createItem(event);
+        } catch (Exception e) {
+            log.error("Create item - error processing message: " + e.getMessage());
+        }
+    }
+
+    private void applyUpdate(final ConsumerRecord<String, String> record) {
+        log.info("Item Join Consumer: Received update item message with payload: " + record.value());
+        try {
+            final UpdateItem event = JsonMapper.readFromJson(record.value(), UpdateItem.class);
+            hotKeyTracker.record(record.topic(), record.partition(), event.getId());
+            itemService.updateItem(event);
+        } catch (RetryableMessagingException e) {
+            consolidatedRetryPublisher.scheduleRetry(itemUpdateTopic, record.key(), record.value(), record.timestamp(), null);
+        } catch (Exception e) {
+            log.error("Update item - error processing message: " + e.getMessage());
+        }
+    }
+
+    private void revoke(final Collection<TopicPartition> partitions) {
+        partitions.forEach(tp -> createWatermarks.remove(tp.partition()));
+    }
+
+    /**
+     * If the create partition is not assigned, as the topics' partitions differ, the updates are not held for it.
+     */
+    private static boolean isCaughtUp(final Consumer<?, ?> consumer, final TopicPartition partition) {
+        if (!consumer.assignment().contains(partition)) {
+            return true;
+        }
+        final OptionalLong lag = consumer.currentLag(partition);
+        return lag.isPresent() && lag.getAsLong() == 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        taskScheduler.shutdown();
+    }
+}
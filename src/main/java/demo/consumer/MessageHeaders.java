@@ -5,4 +5,10 @@ public class MessageHeaders {
     public static final String ORIGINAL_RECEIVED_TIMESTAMP = "original-received-timestamp";
 
     public static final String ORIGINAL_TOPIC = "original-topic";
+
+    public static final String RETRY_ATTEMPT = "retry-attempt";
+
+    public static final String RETRY_DUE_TIMESTAMP = "retry-due-timestamp";
+
+    public static final String TRACE_CONTEXT = "trace-context";
 }
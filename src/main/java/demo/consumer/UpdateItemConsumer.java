@@ -2,10 +2,18 @@ package demo.consumer;
 
 import demo.event.UpdateItem;
 import demo.exception.RetryableMessagingException;
+import demo.hotkey.HotKeyLane;
+import demo.hotkey.HotKeyTracker;
 import demo.mapper.JsonMapper;
+import demo.retry.ConsolidatedRetryHandler;
+import demo.retry.ConsolidatedRetryPublisher;
 import demo.service.ItemService;
+import demo.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.annotation.RetryableTopic;
@@ -20,26 +28,92 @@ import org.springframework.stereotype.Component;
 @Slf4j
 @RequiredArgsConstructor
 @Component
-public class UpdateItemConsumer {
+public class UpdateItemConsumer implements ConsolidatedRetryHandler {
 
     private final ItemService itemService;
 
+    private final ConsolidatedRetryPublisher consolidatedRetryPublisher;
+
+    private final HotKeyTracker hotKeyTracker;
+
+    private final HotKeyLane hotKeyLane;
+
+    private final Tracer tracer;
+
+    @Value("${demo.topics.itemUpdateTopic}")
+    private String itemUpdateTopic;
+
+    /**
+     * With consolidated retry enabled, a single attempt leaves just the dead letter topic in place, with retries going to
+     * the shared retry topic instead of the per-listener retry topics.
+     *
+     * The update item consumer takes the retry consumers' shorter fetch wait too, as after each failure the error handler
+     * seeks back, and the records are only fetched again once the fetch already in flight has returned.
+     */
     @RetryableTopic(
-            attempts = "#{'${demo.retry.maxRetryAttempts}'}",
+            attempts = "#{${demo.retry.consolidated.enabled:false} ? '1' : '${demo.retry.maxRetryAttempts}'}",
             autoCreateTopics = "#{'${demo.retry.autoCreateRetryTopics}'}",
             backoff = @Backoff(delayExpression = "#{'${demo.retry.retryIntervalMilliseconds}'}", multiplierExpression = "#{'${demo.retry.retryBackoffMultiplier}'}"),
             fixedDelayTopicStrategy = FixedDelayStrategy.MULTIPLE_TOPICS,
             include = {RetryableMessagingException.class},
+            listenerContainerFactory = "retryTopicContainerFactory",
             timeout = "#{'${demo.retry.maxRetryDurationMilliseconds}'}",
             topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE)
-    @KafkaListener(topics = "#{'${demo.topics.itemUpdateTopic}'}", containerFactory = "kafkaListenerContainerFactory")
-    public void listen(@Payload final String payload) {
+    @KafkaListener(topics = "#{'${demo.topics.itemUpdateTopic}'}", containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{!${demo.join.enabled:false}}",
+            properties = ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG + "=${demo.consumer.retryFetchMaxWaitMilliseconds}")
+    public void listen(@Payload final String payload,
+                       @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) final String key,
+                       @Header(KafkaHeaders.RECEIVED_TOPIC) final String topic,
+                       @Header(KafkaHeaders.RECEIVED_PARTITION) final int partition,
+                       @Header(KafkaHeaders.RECEIVED_TIMESTAMP) final long timestamp,
+                       final Consumer<?, ?> consumer) {
         log.info("Update Item Consumer: Received message with payload: " + payload);
+        final UpdateItem event;
+        try {
+            event = tracer.trace("deserialize", () -> JsonMapper.readFromJson(payload, UpdateItem.class));
+        } catch (Exception e) {
+            log.error("Update item - error processing message: " + e.getMessage());
+            return;
+        }
+        final boolean hot = hotKeyTracker.record(topic, partition, event.getId());
+        if (hotKeyLane.isEnabled() && topic.equals(itemUpdateTopic) && hotKeyLane.shouldRoute(event.getId(), hot, consumer)) {
+            hotKeyLane.route(event.getId(), payload);
+            return;
+        }
+        try {
+            update(event);
+        } catch (RetryableMessagingException e) {
+            if(consolidatedRetryPublisher.isEnabled()) {
+                consolidatedRetryPublisher.scheduleRetry(itemUpdateTopic, key, payload, timestamp, null);
+            } else {
+                // Ensure the message is retried.
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public String getRetryableTopic() {
+        return itemUpdateTopic;
+    }
+
+    @Override
+    public void handleRetry(final String payload) {
+        final UpdateItem event;
+        try {
+            event = tracer.trace("deserialize", () -> JsonMapper.readFromJson(payload, UpdateItem.class));
+        } catch (Exception e) {
+            log.error("Update item - error processing message: " + e.getMessage());
+            return;
+        }
+        update(event);
+    }
+
+    private void update(final UpdateItem event) {
         try {
-            UpdateItem event = JsonMapper.readFromJson(payload, UpdateItem.class);
             itemService.updateItem(event);
         } catch (RetryableMessagingException e) {
-            // Ensure the message is retried.
             throw e;
         } catch (Exception e) {
             log.error("Update item - error processing message: " + e.getMessage());
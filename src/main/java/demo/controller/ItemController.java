@@ -5,6 +5,7 @@ import java.util.UUID;
 
 import demo.domain.Item;
 import demo.repository.ItemRepository;
+import demo.state.ItemStateStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,9 +24,17 @@ public class ItemController {
     @Autowired
     private final ItemRepository itemRepository;
 
+    @Autowired
+    private final ItemStateStore itemStateStore;
+
     @GetMapping("/{itemId}/status")
     public ResponseEntity<String> getItemStatus(@PathVariable UUID itemId) {
         try {
+            if(itemStateStore.isAuthoritativeFor(itemId) && itemStateStore.getStatus(itemId).isEmpty()) {
+                // Answer misses from the state store without a database lookup.  A cached status may lag an update
+                // applied by another instance, so hits are read from the database.
+                return ResponseEntity.notFound().build();
+            }
             Optional<Item> item = itemRepository.findById(itemId);
             if(item.isPresent()) {
                 return ResponseEntity.ok(item.get().getStatus().toString());
@@ -0,0 +1,68 @@
+package demo.hotkey;
+
+import java.util.UUID;
+
+/**
+ * Estimates how many times each item id has been seen, in a fixed amount of memory, never under-counting.
+ *
+ * Uses conservative update, only incrementing the rows holding the current minimum, which keeps the over-count from
+ * colliding ids down.  Halving every counter ages out old traffic.
+ */
+class CountMinSketch {
+
+    private final long[][] counts;
+    private final int mask;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth rows, each with an independent hash
+     */
+    CountMinSketch(final int width, final int depth) {
+        final int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.counts = new long[depth][size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Count the id, returning its estimate including this occurrence.
+     */
+    long add(final UUID id) {
+        final long estimate = estimate(id) + 1;
+        for (int row=0; row<counts.length; row++) {
+            final int index = index(id, row);
+            if (counts[row][index] < estimate) {
+                counts[row][index] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    long estimate(final UUID id) {
+        long estimate = Long.MAX_VALUE;
+        for (int row=0; row<counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][index(id, row)]);
+        }
+        return estimate;
+    }
+
+    void decay() {
+        for (long[] row : counts) {
+            for (int i=0; i<row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+    }
+
+    /**
+     * Murmur3 finaliser over both halves of the id, seeded per row.
+     */
+    private int index(final UUID id, final int row) {
+        long h = id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32) ^ (row * 0x9e3779b97f4a7c15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,16 @@
+package demo.hotkey;
+
+import lombok.Value;
+
+/**
+ * A frequently seen key, with its count since last aged, which may over-count by up to the error.
+ */
+@Value
+public class HeavyHitter {
+
+    String key;
+
+    long count;
+
+    long error;
+}
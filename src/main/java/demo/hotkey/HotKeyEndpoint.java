@@ -0,0 +1,24 @@
+package demo.hotkey;
+
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the heaviest item ids and the partition load of each topic at {@code /actuator/hotkeys}.
+ */
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeyEndpoint {
+
+    private final HotKeyTracker hotKeyTracker;
+
+    @ReadOperation
+    public Map<String, TopicLoad> load() {
+        return hotKeyTracker.getLoad();
+    }
+}
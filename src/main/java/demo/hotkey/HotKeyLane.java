@@ -0,0 +1,166 @@
+package demo.hotkey;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import demo.tracing.Tracer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.TopicPartitionOffset;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the update events of hot items off the update item topic onto a dedicated topic with its own consumer, so that
+ * a burst for one item, and the retries it causes, hold up that lane rather than the other items on its partition.
+ *
+ * Events are keyed by item id on the lane, so each item's events stay in order there.  An item's events only return to
+ * the main topic once it is no longer hot and the lane's consumers have committed past the last event routed for it,
+ * so that a later event is not applied ahead of an earlier one still queued, or in backoff, on the lane.  The lane's
+ * committed offsets are read in bulk and cached for a refresh interval, rather than per event, so a cooled item stays on
+ * the lane for up to that interval longer.  The routed events are tracked by the instance routing them, so order is not
+ * kept across a rebalance of the update item topic.
+ */
+@Slf4j
+@Component
+public class HotKeyLane {
+
+    static final String ROUTED_METRIC = "demo.hotkey.lane.routed";
+
+    /**
+     * The routed items tracked before those whose events have drained from the lane are pruned.
+     */
+    static final int MIN_PRUNE_THRESHOLD = 10000;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final Tracer tracer;
+    private final boolean enabled;
+    private final String hotTopic;
+    private final long offsetRefreshMilliseconds;
+    private final Counter routed;
+
+    /**
+     * The lane partition and offset of the last event routed for each item, until seen to be drained.
+     */
+    private final Map<UUID, TopicPartitionOffset> lastRouted = new ConcurrentHashMap<>();
+    private volatile int pruneThreshold = MIN_PRUNE_THRESHOLD;
+
+    /**
+     * The lane's committed offsets for the partitions routed to, as last read, and when.
+     */
+    private volatile Map<TopicPartition, Long> committedOffsets = Map.of();
+    private volatile long committedOffsetsReadAt;
+
+    public HotKeyLane(final KafkaTemplate<String, String> kafkaTemplate,
+                      final Tracer tracer,
+                      final MeterRegistry meterRegistry,
+                      @Value("${demo.hotkey.lane.enabled:false}") final boolean enabled,
+                      @Value("${demo.topics.itemUpdateHotTopic}") final String hotTopic,
+                      @Value("${demo.hotkey.lane.offsetRefreshMilliseconds:1000}") final long offsetRefreshMilliseconds) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.tracer = tracer;
+        this.enabled = enabled;
+        this.hotTopic = hotTopic;
+        this.offsetRefreshMilliseconds = offsetRefreshMilliseconds;
+        this.routed = meterRegistry.counter(ROUTED_METRIC);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether to route the item's event to the lane, because the item is hot, or because events routed for it may still
+     * be queued on the lane.
+     *
+     * @param consumer a consumer in the lane listener's consumer group, to read the lane's committed offsets
+     */
+    public boolean shouldRoute(final UUID itemId, final boolean hot, final Consumer<?, ?> consumer) {
+        if (lastRouted.size() > pruneThreshold) {
+            prune(consumer);
+        }
+        if (hot) {
+            return true;
+        }
+        final TopicPartitionOffset last = lastRouted.get(itemId);
+        if (last == null) {
+            return false;
+        }
+        if (isDrained(last) || (refreshCommittedOffsets(consumer) && isDrained(last))) {
+            lastRouted.remove(itemId, last);
+            return false;
+        }
+        return true;
+    }
+
+    public void route(final UUID itemId, final String payload) {
+        final ProducerRecord<String, String> record = new ProducerRecord<>(hotTopic, itemId.toString(), payload);
+        tracer.inject(record.headers());
+        final RecordMetadata metadata;
+        try {
+            // Block so that the event's offset is not committed before it is safely on the lane.
+            metadata = kafkaTemplate.send(record).get().getRecordMetadata();
+        } catch (Exception e) {
+            throw new RuntimeException("Error sending hot item event to topic " + hotTopic, e);
+        }
+        lastRouted.put(itemId, new TopicPartitionOffset(hotTopic, metadata.partition(), metadata.offset()));
+        routed.increment();
+        log.debug("Routed event for hot item {} to {}", itemId, hotTopic);
+    }
+
+    /**
+     * Forget the items whose events have all drained from the lane, as items that cool and have no further events are
+     * not otherwise seen again.
+     */
+    private synchronized void prune(final Consumer<?, ?> consumer) {
+        if (lastRouted.size() <= pruneThreshold) {
+            return;
+        }
+        refreshCommittedOffsets(consumer);
+        lastRouted.values().removeIf(this::isDrained);
+        pruneThreshold = Math.max(MIN_PRUNE_THRESHOLD, lastRouted.size() * 2);
+    }
+
+    /**
+     * Whether the lane had committed past the routed event when its offsets were last read.
+     */
+    private boolean isDrained(final TopicPartitionOffset routedOffset) {
+        final Long committed = committedOffsets.get(routedOffset.getTopicPartition());
+        return committed != null && committed > routedOffset.getOffset();
+    }
+
+    /**
+     * Read the lane's committed offsets for every partition routed to in one call, unless read within the refresh
+     * interval.
+     *
+     * @return whether the offsets were read
+     */
+    private synchronized boolean refreshCommittedOffsets(final Consumer<?, ?> consumer) {
+        final long now = System.currentTimeMillis();
+        if (now - committedOffsetsReadAt < offsetRefreshMilliseconds) {
+            return false;
+        }
+        final Set<TopicPartition> partitions = lastRouted.values().stream()
+                .map(TopicPartitionOffset::getTopicPartition)
+                .collect(Collectors.toSet());
+        final Map<TopicPartition, Long> offsets = new HashMap<>();
+        consumer.committed(partitions).forEach((partition, offset) -> {
+            if (offset != null) {
+                offsets.put(partition, offset.offset());
+            }
+        });
+        committedOffsets = offsets;
+        committedOffsetsReadAt = now;
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+package demo.hotkey;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the heaviest item ids, and the load per partition, of each topic consumed, so that an item receiving a burst
+ * of events, and the partition it stalls, can be identified.
+ *
+ * Per topic, a count-min sketch estimates every item's events, and a space-saving table keeps the top items.  Counts
+ * are halved every decay interval, so reflect roughly the last two intervals of traffic.  An item is hot when its
+ * estimate reaches the hot threshold.
+ */
+@Component
+public class HotKeyTracker {
+
+    static final String SKEW_METRIC = "demo.hotkey.partition.skew";
+
+    static final String TOP_KEY_METRIC = "demo.hotkey.top.key.events";
+
+    private final MeterRegistry meterRegistry;
+    private final int topK;
+    private final int sketchWidth;
+    private final int sketchDepth;
+    private final long decayIntervalMilliseconds;
+    private final long hotThreshold;
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    public HotKeyTracker(final MeterRegistry meterRegistry,
+                         @Value("${demo.hotkey.topK}") final int topK,
+                         @Value("${demo.hotkey.sketchWidth}") final int sketchWidth,
+                         @Value("${demo.hotkey.sketchDepth}") final int sketchDepth,
+                         @Value("${demo.hotkey.decayIntervalMilliseconds}") final long decayIntervalMilliseconds,
+                         @Value("${demo.hotkey.hotThreshold}") final long hotThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.topK = topK;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.decayIntervalMilliseconds = decayIntervalMilliseconds;
+        this.hotThreshold = hotThreshold;
+    }
+
+    /**
+     * Record an event for the item on the topic partition.
+     *
+     * @return whether the item is hot on the topic
+     */
+    public boolean record(final String topic, final int partition, final UUID itemId) {
+        if (itemId == null) {
+            return false;
+        }
+        return trackers.computeIfAbsent(topic, this::register).record(partition, itemId) >= hotThreshold;
+    }
+
+    /**
+     * The load of each topic, by topic.
+     */
+    public Map<String, TopicLoad> getLoad() {
+        final Map<String, TopicLoad> load = new TreeMap<>();
+        trackers.forEach((topic, tracker) -> load.put(topic, tracker.load()));
+        return load;
+    }
+
+    private Tracker register(final String topic) {
+        final Tracker tracker = new Tracker();
+        Gauge.builder(SKEW_METRIC, tracker, t -> t.load().getPartitionSkew())
+                .tag("topic", topic)
+                .register(meterRegistry);
+        Gauge.builder(TOP_KEY_METRIC, tracker, t -> t.load().getTopKeys().stream().mapToLong(HeavyHitter::getCount).findFirst().orElse(0))
+                .tag("topic", topic)
+                .register(meterRegistry);
+        return tracker;
+    }
+
+    /**
+     * Serialises the consumers of a topic's partitions, which only hold it to count.
+     */
+    private class Tracker {
+
+        private final CountMinSketch sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        private final SpaceSaving<UUID> topKeys = new SpaceSaving<>(topK * 4);
+        private final Map<Integer, long[]> partitionEvents = new TreeMap<>();
+        private long nextDecay = System.currentTimeMillis() + decayIntervalMilliseconds;
+
+        private synchronized long record(final int partition, final UUID itemId) {
+            final long now = System.currentTimeMillis();
+            if (now >= nextDecay) {
+                decay();
+                nextDecay = now + decayIntervalMilliseconds;
+            }
+            partitionEvents.computeIfAbsent(partition, p -> new long[1])[0]++;
+            final long estimate = sketch.add(itemId);
+            topKeys.offer(itemId, estimate);
+            return estimate;
+        }
+
+        private void decay() {
+            sketch.decay();
+            topKeys.decay();
+            partitionEvents.values().forEach(events -> events[0] >>>= 1);
+        }
+
+        private synchronized TopicLoad load() {
+            final Map<Integer, Long> events = new TreeMap<>();
+            partitionEvents.forEach((partition, count) -> events.put(partition, count[0]));
+            final long max = events.values().stream().mapToLong(Long::longValue).max().orElse(0);
+            final double mean = events.values().stream().mapToLong(Long::longValue).average().orElse(0);
+            return new TopicLoad(topKeys.top(topK), events, mean == 0 ? 1.0 : max / mean);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package demo.hotkey;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent keys in a bounded number of counters, using the space-saving algorithm: a key without a
+ * counter takes over the smallest one when they are all in use, inheriting its count as the error.
+ *
+ * A newcomer takes over only if its estimated frequency beats the smallest count, so that the long tail of keys seen
+ * once does not churn the counters.
+ */
+class SpaceSaving<K> {
+
+    private final int capacity;
+    private final Map<K, long[]> counters;
+
+    SpaceSaving(final int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * @param estimate the key's estimated count including this occurrence, as an upper bound
+     */
+    void offer(final K key, final long estimate) {
+        final long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[] { estimate, estimate - 1 });
+            return;
+        }
+        Map.Entry<K, long[]> smallest = null;
+        for (Map.Entry<K, long[]> entry : counters.entrySet()) {
+            if (smallest == null || entry.getValue()[0] < smallest.getValue()[0]) {
+                smallest = entry;
+            }
+        }
+        if (estimate > smallest.getValue()[0]) {
+            final long replaced = smallest.getValue()[0];
+            counters.remove(smallest.getKey());
+            counters.put(key, new long[] { Math.max(estimate, replaced + 1), replaced });
+        }
+    }
+
+    List<HeavyHitter> top(final int n) {
+        return counters.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<K, long[]> entry) -> entry.getValue()[0]).reversed())
+                .limit(n)
+                .map(entry -> new HeavyHitter(String.valueOf(entry.getKey()), entry.getValue()[0], entry.getValue()[1]))
+                .toList();
+    }
+
+    void decay() {
+        final Iterator<long[]> iterator = counters.values().iterator();
+        while (iterator.hasNext()) {
+            final long[] counter = iterator.next();
+            counter[0] >>>= 1;
+            counter[1] >>>= 1;
+            if (counter[0] == 0) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package demo.hotkey;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * The heaviest item ids on a topic, and its events per partition, since last aged.
+ */
+@Value
+public class TopicLoad {
+
+    List<HeavyHitter> topKeys;
+
+    Map<Integer, Long> partitionEvents;
+
+    /**
+     * The busiest partition's events over the mean across the partitions that have had events, 1.0 being even.
+     */
+    double partitionSkew;
+}
@@ -0,0 +1,114 @@
+package demo.lifecycle;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warms up the connection pool, the JPA queries and the JSON readers before the listener containers start consuming,
+ * so that the first events are not processed at cold-start latency.
+ *
+ * Started in an earlier lifecycle phase than the listener containers, so they only start once this has completed.
+ */
+@Slf4j
+@Component
+public class ApplicationWarmup implements SmartLifecycle {
+
+    private final DataSource dataSource;
+    private final ItemRepository itemRepository;
+    private final int connections;
+    private final int iterations;
+
+    private volatile boolean warm;
+
+    public ApplicationWarmup(final DataSource dataSource,
+                             final ItemRepository itemRepository,
+                             @Value("${demo.lifecycle.warmupConnections}") final int connections,
+                             @Value("${demo.lifecycle.warmupIterations}") final int iterations) {
+        this.dataSource = dataSource;
+        this.itemRepository = itemRepository;
+        this.connections = connections;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void start() {
+        final long started = System.currentTimeMillis();
+        try {
+            warmConnectionPool();
+            warmQueries();
+            warmJsonMapper();
+            log.info("Warmup completed in {} ms", System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            // Consume regardless, just without the benefit of the warmup.
+            log.warn("Warmup failed after {} ms: {}", System.currentTimeMillis() - started, e.getMessage());
+        }
+        warm = true;
+    }
+
+    /**
+     * Open the connections together, so the pool holds them all rather than reusing one.
+     */
+    private void warmConnectionPool() throws Exception {
+        final List<Connection> opened = new ArrayList<>();
+        try {
+            for (int i=0; i<connections; i++) {
+                final Connection connection = dataSource.getConnection();
+                opened.add(connection);
+                connection.isValid(1);
+            }
+        } finally {
+            for (Connection connection : opened) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Exercise the lookups and writes the consumers issue, against an item that does not exist.
+     */
+    private void warmQueries() {
+        final UUID itemId = UUID.randomUUID();
+        for (int i=0; i<iterations; i++) {
+            itemRepository.findById(itemId);
+            itemRepository.updateStatus(itemId, ItemStatus.ACTIVE);
+        }
+    }
+
+    private void warmJsonMapper() {
+        final String createItem = JsonMapper.writeToJson(CreateItem.builder().id(UUID.randomUUID()).name("warmup").build());
+        final String updateItem = JsonMapper.writeToJson(UpdateItem.builder().id(UUID.randomUUID()).status(ItemStatus.ACTIVE).build());
+        for (int i=0; i<iterations; i++) {
+            JsonMapper.readFromJson(createItem, CreateItem.class);
+            JsonMapper.readFromJson(updateItem, UpdateItem.class);
+        }
+    }
+
+    @Override
+    public void stop() {
+        warm = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return warm;
+    }
+
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 100;
+    }
+}
@@ -0,0 +1,48 @@
+package demo.lifecycle;
+
+import java.util.Optional;
+
+import demo.autoscaling.ListenerConcurrencyController;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the instance ready only once the warmup has completed and every listener container is consuming, and not
+ * ready again as soon as the containers begin draining on shutdown.  Included in the readiness health group.
+ *
+ * A container the autoscaler has stopped to change its concurrency is started again straight away, so is not counted as
+ * stopped, as the instance is not otherwise taken out of service while its consumers rebalance.
+ */
+@RequiredArgsConstructor
+@Component
+public class ConsumerReadinessHealthIndicator implements HealthIndicator {
+
+    private final ApplicationWarmup applicationWarmup;
+
+    private final KafkaListenerEndpointRegistry registry;
+
+    private final Optional<ListenerConcurrencyController> listenerConcurrencyController;
+
+    @Override
+    public Health health() {
+        if (!applicationWarmup.isRunning()) {
+            return Health.outOfService().withDetail("reason", "warming up").build();
+        }
+        // Containers that are not started automatically, such as the separate create and update listeners when joined.
+        final long stopped = registry.getListenerContainers().stream()
+                .filter(container -> container.isAutoStartup() && !container.isRunning() && !isRestarting(container))
+                .count();
+        if (stopped > 0) {
+            return Health.outOfService().withDetail("stoppedContainers", stopped).build();
+        }
+        return Health.up().withDetail("containers", registry.getListenerContainers().size()).build();
+    }
+
+    private boolean isRestarting(final MessageListenerContainer container) {
+        return listenerConcurrencyController.map(controller -> controller.isRestarting(container.getListenerId())).orElse(false);
+    }
+}
@@ -0,0 +1,82 @@
+package demo.lifecycle;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how long after the JVM started the application became ready, and consumed its first message, as these are
+ * what determine how quickly a new instance starts reducing lag.
+ *
+ * For the class data sharing training run, the application can be made to exit once the first message is consumed, so
+ * that the archive covers the classes loaded on the consuming path.
+ */
+@Slf4j
+@Component
+public class StartupTimer implements RecordInterceptor<String, String> {
+
+    static final String READY_METRIC = "demo.startup.ready";
+
+    static final String FIRST_MESSAGE_METRIC = "demo.startup.first.message";
+
+    private final ConfigurableApplicationContext context;
+    private final boolean exitAfterFirstMessage;
+
+    private final AtomicBoolean firstMessage = new AtomicBoolean();
+
+    private volatile long readyMillis = -1;
+    private volatile long firstMessageMillis = -1;
+
+    public StartupTimer(final MeterRegistry meterRegistry,
+                        final ConfigurableApplicationContext context,
+                        @Value("${demo.startup.exitAfterFirstMessage:false}") final boolean exitAfterFirstMessage) {
+        this.context = context;
+        this.exitAfterFirstMessage = exitAfterFirstMessage;
+        TimeGauge.builder(READY_METRIC, this, TimeUnit.MILLISECONDS, StartupTimer::getReadyMillis).register(meterRegistry);
+        TimeGauge.builder(FIRST_MESSAGE_METRIC, this, TimeUnit.MILLISECONDS, StartupTimer::getFirstMessageMillis).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis = sinceJvmStart();
+        log.info("Startup: ready {} ms after JVM start", readyMillis);
+    }
+
+    @Override
+    public ConsumerRecord<String, String> intercept(final ConsumerRecord<String, String> record, final Consumer<String, String> consumer) {
+        if (firstMessage.compareAndSet(false, true)) {
+            firstMessageMillis = sinceJvmStart();
+            log.info("Startup: first message consumed {} ms after JVM start", firstMessageMillis);
+            if (exitAfterFirstMessage) {
+                // Not on the consumer thread, as closing the context waits for the listener containers to stop.
+                new Thread(() -> System.exit(SpringApplication.exit(context)), "startup-exit").start();
+            }
+        }
+        return record;
+    }
+
+    public long getReadyMillis() {
+        return readyMillis;
+    }
+
+    public long getFirstMessageMillis() {
+        return firstMessageMillis;
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
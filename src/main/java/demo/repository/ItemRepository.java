@@ -1,11 +1,48 @@
 package demo.repository;
 
+import java.util.List;
 import java.util.UUID;
 
 import demo.domain.Item;
+import demo.service.ItemStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, UUID> {
+
+    /**
+     * Update the status only, without first loading the entity.
+     *
+     * @return the number of rows updated
+     */
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.status = :status where i.id = :id")
+    int updateStatus(@Param("id") UUID id, @Param("status") ItemStatus status);
+
+    /**
+     * Update the status only if it is still the expected status, without first loading the entity.
+     *
+     * @return the number of rows updated, 0 if the item is missing or its status has since changed
+     */
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.status = :status where i.id = :id and i.status = :expected")
+    int updateStatus(@Param("id") UUID id, @Param("expected") ItemStatus expected, @Param("status") ItemStatus status);
+
+    /**
+     * The first page of item statuses in id order, to page through with {@link #findByIdGreaterThanOrderByIdAsc}.
+     */
+    List<ItemStatusView> findByOrderByIdAsc(Pageable pageable);
+
+    /**
+     * The next page of item statuses in id order, after the last id of the previous page.
+     */
+    List<ItemStatusView> findByIdGreaterThanOrderByIdAsc(UUID id, Pageable pageable);
 }
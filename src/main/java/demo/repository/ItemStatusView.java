@@ -0,0 +1,15 @@
+package demo.repository;
+
+import java.util.UUID;
+
+import demo.service.ItemStatus;
+
+/**
+ * Projection of an item onto its id and status, for reading many items without loading the entities.
+ */
+public interface ItemStatusView {
+
+    UUID getId();
+
+    ItemStatus getStatus();
+}
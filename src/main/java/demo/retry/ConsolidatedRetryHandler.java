@@ -0,0 +1,17 @@
+package demo.retry;
+
+/**
+ * A listener whose retries are re-dispatched to it by the {@link ConsolidatedRetryScheduler}.
+ */
+public interface ConsolidatedRetryHandler {
+
+    /**
+     * The original topic whose retries this handler processes.
+     */
+    String getRetryableTopic();
+
+    /**
+     * Process a retried payload, throwing a {@link demo.exception.RetryableMessagingException} if it should be retried again.
+     */
+    void handleRetry(String payload);
+}
@@ -0,0 +1,120 @@
+package demo.retry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import demo.consumer.MessageHeaders;
+import demo.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes events that failed with a retryable error to the single shared retry topic, stamped with the topic to
+ * re-dispatch them to and the time they are due, or to the original topic's dead letter topic once the configured
+ * attempts or duration are exhausted.
+ *
+ * The backoff matches that applied by {@code @RetryableTopic}: the interval grows by the multiplier on each retry, capped
+ * at the Spring Retry default maximum interval.
+ */
+@Slf4j
+@Component
+public class ConsolidatedRetryPublisher {
+
+    static final String DLT_SUFFIX = "-dlt";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final Tracer tracer;
+    private final boolean enabled;
+    private final String retryTopic;
+    private final long retryIntervalMilliseconds;
+    private final double retryBackoffMultiplier;
+    private final int maxRetryAttempts;
+    private final long maxRetryDurationMilliseconds;
+
+    public ConsolidatedRetryPublisher(final KafkaTemplate<String, String> kafkaTemplate,
+                                      final Tracer tracer,
+                                      @Value("${demo.retry.consolidated.enabled:false}") final boolean enabled,
+                                      @Value("${demo.topics.retryTopic}") final String retryTopic,
+                                      @Value("${demo.retry.retryIntervalMilliseconds}") final long retryIntervalMilliseconds,
+                                      @Value("${demo.retry.retryBackoffMultiplier}") final double retryBackoffMultiplier,
+                                      @Value("${demo.retry.maxRetryAttempts}") final int maxRetryAttempts,
+                                      @Value("${demo.retry.maxRetryDurationMilliseconds}") final long maxRetryDurationMilliseconds) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.tracer = tracer;
+        this.enabled = enabled;
+        this.retryTopic = retryTopic;
+        this.retryIntervalMilliseconds = retryIntervalMilliseconds;
+        this.retryBackoffMultiplier = retryBackoffMultiplier;
+        this.maxRetryAttempts = maxRetryAttempts;
+        this.maxRetryDurationMilliseconds = maxRetryDurationMilliseconds;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedule the next retry of an event, keeping the key of the record that failed so that the retry and dead letter
+     * records stay on the item's partition.
+     *
+     * @param timestamp the timestamp of the record that failed, from which the retry duration runs on the first failure,
+     *                  as for {@code @RetryableTopic}
+     * @param previousHeaders the headers of the retry record that failed, or null on the first failure
+     */
+    public void scheduleRetry(final String originalTopic, final String key, final String payload, final long timestamp,
+                              final Headers previousHeaders) {
+        final long now = System.currentTimeMillis();
+        final long originalReceivedTimestamp = headerValue(previousHeaders, MessageHeaders.ORIGINAL_RECEIVED_TIMESTAMP).orElse(timestamp);
+        // The first delivery counts as attempt 1, as for @RetryableTopic.
+        final int attempt = headerValue(previousHeaders, MessageHeaders.RETRY_ATTEMPT).orElse(1L).intValue() + 1;
+
+        final ProducerRecord<String, String> record;
+        if (attempt > maxRetryAttempts || now - originalReceivedTimestamp > maxRetryDurationMilliseconds) {
+            log.error("Event from topic {} exhausted retries after {} attempts - sending to dead letter topic", originalTopic, attempt - 1);
+            record = new ProducerRecord<>(originalTopic + DLT_SUFFIX, key, payload);
+        } else {
+            final long dueTimestamp = now + delayFor(attempt);
+            record = new ProducerRecord<>(retryTopic, key, payload);
+            addHeader(record, MessageHeaders.RETRY_DUE_TIMESTAMP, dueTimestamp);
+            log.info("Scheduling retry attempt {} of event from topic {} due at {}", attempt, originalTopic, dueTimestamp);
+        }
+        record.headers().add(MessageHeaders.ORIGINAL_TOPIC, originalTopic.getBytes(StandardCharsets.UTF_8));
+        addHeader(record, MessageHeaders.ORIGINAL_RECEIVED_TIMESTAMP, originalReceivedTimestamp);
+        addHeader(record, MessageHeaders.RETRY_ATTEMPT, attempt);
+        tracer.inject(record.headers());
+        try {
+            // Block so that the failed event's offset is not committed before its retry is safely written.
+            kafkaTemplate.send(record).get();
+        } catch (Exception e) {
+            throw new RuntimeException("Error sending retry to topic " + record.topic(), e);
+        }
+    }
+
+    /**
+     * The delay before the given attempt, where attempt 2 is the first retry.
+     */
+    long delayFor(final int attempt) {
+        final double delay = retryIntervalMilliseconds * Math.pow(retryBackoffMultiplier, attempt - 2);
+        return (long) Math.min(delay, Math.max(ExponentialBackOffPolicy.DEFAULT_MAX_INTERVAL, retryIntervalMilliseconds));
+    }
+
+    public static Optional<Long> headerValue(final Headers headers, final String name) {
+        final Header header = headers == null ? null : headers.lastHeader(name);
+        return header == null ? Optional.empty() : Optional.of(Long.parseLong(new String(header.value(), StandardCharsets.UTF_8)));
+    }
+
+    public static Optional<String> headerString(final Headers headers, final String name) {
+        final Header header = headers == null ? null : headers.lastHeader(name);
+        return header == null ? Optional.empty() : Optional.of(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    private static void addHeader(final ProducerRecord<String, String> record, final String name, final long value) {
+        record.headers().add(name, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package demo.retry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import demo.consumer.MessageHeaders;
+import demo.exception.RetryableMessagingException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ContainerPartitionPausingBackOffManager;
+import org.springframework.kafka.listener.ContainerPausingBackOffHandler;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes the single shared retry topic and re-dispatches each event to the handler for its original topic once due.
+ *
+ * When the record at the head of a partition is not yet due, only that partition is paused, and only until the record's
+ * due time, using the same backoff manager that drives Spring's retry topics.  Records behind it wait for it, so an event
+ * can be held for up to the longest configured interval beyond its due time, but is never delivered early.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "demo.retry.consolidated.enabled", havingValue = "true")
+public class ConsolidatedRetryScheduler {
+
+    static final String LISTENER_ID = "consolidated-retry";
+
+    private final ConsolidatedRetryPublisher retryPublisher;
+    private final Map<String, ConsolidatedRetryHandler> handlers;
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final KafkaConsumerBackoffManager backoffManager;
+
+    public ConsolidatedRetryScheduler(final ConsolidatedRetryPublisher retryPublisher,
+                                      final List<ConsolidatedRetryHandler> handlers,
+                                      final KafkaListenerEndpointRegistry registry) {
+        this.retryPublisher = retryPublisher;
+        this.handlers = handlers.stream().collect(Collectors.toMap(ConsolidatedRetryHandler::getRetryableTopic, Function.identity()));
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        this.taskScheduler.setThreadNamePrefix("retry-resume-");
+        this.taskScheduler.initialize();
+        this.backoffManager = new ContainerPartitionPausingBackOffManager(registry,
+                new ContainerPausingBackOffHandler(new ListenerContainerPauseService(registry, taskScheduler)));
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "#{'${demo.topics.retryTopic}'}", containerFactory = "retrySchedulerContainerFactory")
+    public void listen(final ConsumerRecord<String, String> record, final Consumer<?, ?> consumer) {
+        final long dueTimestamp = ConsolidatedRetryPublisher.headerValue(record.headers(), MessageHeaders.RETRY_DUE_TIMESTAMP).orElse(0L);
+        // Throws if not yet due, pausing the partition until it is and seeking back to this record.
+        backoffManager.backOffIfNecessary(backoffManager.createContext(dueTimestamp, LISTENER_ID,
+                new TopicPartition(record.topic(), record.partition()), consumer));
+
+        final String originalTopic = ConsolidatedRetryPublisher.headerString(record.headers(), MessageHeaders.ORIGINAL_TOPIC).orElse(null);
+        final ConsolidatedRetryHandler handler = handlers.get(originalTopic);
+        if (handler == null) {
+            log.error("No retry handler for original topic {} - discarding event: {}", originalTopic, record.value());
+            return;
+        }
+        try {
+            handler.handleRetry(record.value());
+        } catch (RetryableMessagingException e) {
+            retryPublisher.scheduleRetry(originalTopic, record.key(), record.value(), record.timestamp(), record.headers());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        taskScheduler.shutdown();
+    }
+}
@@ -0,0 +1,97 @@
+package demo.retry;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import demo.consumer.MessageHeaders;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Measures how accurately retries are redelivered, for both Spring's retry topics and the consolidated retry topic.
+ *
+ * For each retried record that is due, records how late it was delivered against its scheduled time, and how long it
+ * has been since the event was originally received, tagged by topic and attempt.
+ */
+@RequiredArgsConstructor
+@Component
+public class RetryTimingRecordInterceptor implements RecordInterceptor<String, String> {
+
+    static final String LATENESS_METRIC = "demo.retry.delivery.lateness";
+
+    static final String ELAPSED_METRIC = "demo.retry.elapsed";
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public ConsumerRecord<String, String> intercept(final ConsumerRecord<String, String> record, final Consumer<String, String> consumer) {
+        final Optional<Long> dueTimestamp = dueTimestamp(record.headers());
+        final long now = System.currentTimeMillis();
+        // Records delivered before they are due are paused and redelivered, so only the due delivery is measured.  Dead
+        // lettered records still carry the due time of their last retry.
+        if (dueTimestamp.isPresent() && now >= dueTimestamp.get() && !record.topic().endsWith(ConsolidatedRetryPublisher.DLT_SUFFIX)) {
+            final String attempt = attempt(record.headers()).map(String::valueOf).orElse("unknown");
+            timer(LATENESS_METRIC, record.topic(), attempt).record(now - dueTimestamp.get(), TimeUnit.MILLISECONDS);
+            originalTimestamp(record.headers()).ifPresent(original ->
+                    timer(ELAPSED_METRIC, record.topic(), attempt).record(now - original, TimeUnit.MILLISECONDS));
+        }
+        return record;
+    }
+
+    private Timer timer(final String name, final String topic, final String attempt) {
+        return Timer.builder(name)
+                .tag("topic", topic)
+                .tag("attempt", attempt)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * The time a retry is due, from either the consolidated retry headers or Spring's retry topic headers.
+     */
+    public static Optional<Long> dueTimestamp(final Headers headers) {
+        final Optional<Long> consolidated = ConsolidatedRetryPublisher.headerValue(headers, MessageHeaders.RETRY_DUE_TIMESTAMP);
+        if (consolidated.isPresent()) {
+            return consolidated;
+        }
+        return lastHeader(headers, RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP)
+                .map(value -> new BigInteger(value).longValue());
+    }
+
+    private static Optional<Long> attempt(final Headers headers) {
+        final Optional<Long> consolidated = ConsolidatedRetryPublisher.headerValue(headers, MessageHeaders.RETRY_ATTEMPT);
+        if (consolidated.isPresent()) {
+            return consolidated;
+        }
+        return lastHeader(headers, RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS)
+                .map(value -> (long) ByteBuffer.wrap(value).getInt());
+    }
+
+    /**
+     * Spring's retry topics carry the original record's timestamp, the equivalent of the consolidated retry's original
+     * received timestamp.
+     */
+    private static Optional<Long> originalTimestamp(final Headers headers) {
+        final Optional<Long> consolidated = ConsolidatedRetryPublisher.headerValue(headers, MessageHeaders.ORIGINAL_RECEIVED_TIMESTAMP);
+        if (consolidated.isPresent()) {
+            return consolidated;
+        }
+        return lastHeader(headers, RetryTopicHeaders.DEFAULT_HEADER_ORIGINAL_TIMESTAMP)
+                .map(value -> new BigInteger(value).longValue());
+    }
+
+    private static Optional<byte[]> lastHeader(final Headers headers, final String name) {
+        final Header header = headers.lastHeader(name);
+        return header == null ? Optional.empty() : Optional.of(header.value());
+    }
+}
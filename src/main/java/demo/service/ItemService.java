@@ -7,10 +7,16 @@ import demo.event.CreateItem;
 import demo.event.UpdateItem;
 import demo.exception.RetryableMessagingException;
 import demo.repository.ItemRepository;
+import demo.state.ItemStateStore;
+import demo.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
 
 @Service
 @Slf4j
@@ -20,26 +26,91 @@ public class ItemService {
     @Autowired
     private final ItemRepository itemRepository;
 
+    @Autowired
+    private final ItemStateStore itemStateStore;
+
+    @Autowired
+    private final Tracer tracer;
+
     public void createItem(final CreateItem event) {
         Item item = Item.builder()
                 .id(event.getId())
                 .name(event.getName())
                 .status(ItemStatus.NEW)
                 .build();
-        itemRepository.save(item);
+        tracer.trace("db write", () -> itemRepository.save(item));
+        itemStateStore.put(item.getId(), item.getStatus());
         log.info("Item persisted to database with Id: {}", event.getId());
     }
 
+    /**
+     * An update is retried both when its item is not yet found, and when the database is unavailable or timing out, as
+     * the event itself is valid either way.
+     */
     public void updateItem(final UpdateItem event) {
-        final Optional<Item> item = itemRepository.findById(event.getId());
+        try {
+            if(itemStateStore.isAuthoritativeFor(event.getId())) {
+                updateItemFromState(event);
+            } else {
+                updateItemFromDatabase(event);
+            }
+        } catch (TransientDataAccessException | RecoverableDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+            // Retry...
+            log.warn("Database unavailable updating item with Id: {} - retrying update event: {}", event.getId(), e.getMessage());
+            throw new RetryableMessagingException("Retry event.");
+        }
+    }
+
+    private void updateItemFromDatabase(final UpdateItem event) {
+        final Optional<Item> item = tracer.trace("db lookup", () -> itemRepository.findById(event.getId()));
         if(item.isPresent()) {
+            if(!item.get().getStatus().canTransitionTo(event.getStatus())) {
+                log.error("Item with Id: {} cannot transition from {} to {} - discarding update", event.getId(), item.get().getStatus(), event.getStatus());
+                itemStateStore.put(event.getId(), item.get().getStatus());
+                return;
+            }
             item.get().setStatus(event.getStatus());
-            itemRepository.save(item.get());
+            tracer.trace("db write", () -> itemRepository.save(item.get()));
+            itemStateStore.put(event.getId(), event.getStatus());
             log.info("Item updated in database with Id: {}", event.getId());
         } else {
             // Retry...
+            itemStateStore.evict(event.getId());
             log.info("Item not found with Id: {} - retrying update event", event.getId());
             throw new RetryableMessagingException("Retry event.");
         }
     }
+
+    /**
+     * The state store owns this item's partition, so the existence check is decided in memory and only an actual status
+     * change is written.
+     *
+     * The cached status may lag a change made by another instance, via its update or retry partitions, but as statuses
+     * only move forward it can be trusted to skip or discard.  The write is conditional on the cached status, and if that
+     * has since changed the update falls back to the database, which refreshes the cached entry.
+     */
+    private void updateItemFromState(final UpdateItem event) {
+        final Optional<ItemStatus> current = itemStateStore.getStatus(event.getId());
+        if(current.isEmpty()) {
+            // Retry...
+            log.info("Item not found in state store with Id: {} - retrying update event", event.getId());
+            throw new RetryableMessagingException("Retry event.");
+        }
+        if(current.get() == event.getStatus()) {
+            log.info("Item with Id: {} already has status {} - skipping update", event.getId(), event.getStatus());
+            return;
+        }
+        if(!current.get().canTransitionTo(event.getStatus())) {
+            log.error("Item with Id: {} cannot transition from {} to {} - discarding update", event.getId(), current.get(), event.getStatus());
+            return;
+        }
+        if(tracer.trace("db write", () -> itemRepository.updateStatus(event.getId(), current.get(), event.getStatus())) == 0) {
+            // The item has changed or been removed since cached, so decide against the database, which replaces the entry.
+            log.info("Item with Id: {} changed since cached as {} - updating from database", event.getId(), current.get());
+            updateItemFromDatabase(event);
+            return;
+        }
+        itemStateStore.put(event.getId(), event.getStatus());
+        log.info("Item updated in database with Id: {}", event.getId());
+    }
 }
@@ -1,5 +1,12 @@
 package demo.service;
 
 public enum ItemStatus {
-    NEW, ACTIVE, CANCELLED
+    NEW, ACTIVE, CANCELLED;
+
+    /**
+     * NEW is only ever assigned on creation, and a CANCELLED item is terminal.
+     */
+    public boolean canTransitionTo(final ItemStatus target) {
+        return target != null && target != NEW && this != CANCELLED;
+    }
 }
@@ -0,0 +1,275 @@
+package demo.state;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Compact map from item id to a status byte, stored as an open-addressing (linear probing) hash table of fixed-width
+ * slots in a single {@link ByteBuffer}.  Each slot holds the two longs of the UUID and a status byte, 17 bytes in all,
+ * against the 60+ bytes per entry of boxed UUID keys in a {@code ConcurrentHashMap}.  The buffer may be direct (off-heap)
+ * so that very large indexes do not add to GC pressure.
+ *
+ * Status values must be positive.  Lookups are optimistic and lock free unless they race with a write, in which case
+ * they are retried under the read lock.
+ *
+ * A single buffer is limited to 2GB, so the table holds at most {@link #MAX_CAPACITY} slots, and so about 50 million
+ * items.  Adding an item beyond that throws {@link IllegalStateException} rather than growing.
+ */
+public class ItemIdIndex {
+
+    private static final int SLOT_SIZE = 17;
+    private static final int STATUS_OFFSET = 16;
+
+    private static final byte EMPTY = 0;
+    private static final byte DELETED = -1;
+
+    private static final double MAX_LOAD = 0.75;
+
+    /**
+     * The most slots that fit in one buffer, as a power of two.
+     */
+    public static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_SIZE);
+
+    private final boolean offHeap;
+
+    private final int maxCapacity;
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Volatile so that an optimistic read sees a replacement buffer fully constructed.
+     */
+    private volatile ByteBuffer table;
+    private int capacity;
+    private int size;
+    private int used;
+
+    public ItemIdIndex(final int initialCapacity, final boolean offHeap) {
+        this(initialCapacity, offHeap, MAX_CAPACITY);
+    }
+
+    ItemIdIndex(final int initialCapacity, final boolean offHeap, final int maxCapacity) {
+        this.offHeap = offHeap;
+        this.maxCapacity = maxCapacity;
+        this.capacity = tableSizeFor((int) Math.min(Math.ceil(Math.max(initialCapacity, 16) / MAX_LOAD), maxCapacity));
+        this.table = allocate(capacity);
+    }
+
+    /**
+     * @return the status byte, or 0 if the item is not present
+     */
+    public byte get(final UUID itemId) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final byte status = find(table, itemId.getMostSignificantBits(), itemId.getLeastSignificantBits());
+                if (lock.validate(stamp)) {
+                    return status;
+                }
+            } catch (RuntimeException e) {
+                // Read inconsistent state mid-write, so retry under the read lock as for a failed validation.
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(table, itemId.getMostSignificantBits(), itemId.getLeastSignificantBits());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void put(final UUID itemId, final byte status) {
+        if (status <= 0) {
+            throw new IllegalArgumentException("Status must be positive: " + status);
+        }
+        final long stamp = lock.writeLock();
+        try {
+            final int slot = slotOf(table, capacity, itemId.getMostSignificantBits(), itemId.getLeastSignificantBits());
+            if (slot >= 0) {
+                table.put(slot * SLOT_SIZE + STATUS_OFFSET, status);
+                return;
+            }
+            ensureCapacity();
+            insert(itemId.getMostSignificantBits(), itemId.getLeastSignificantBits(), status);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return whether the item was added, rather than already present
+     */
+    public boolean putIfAbsent(final UUID itemId, final byte status) {
+        if (status <= 0) {
+            throw new IllegalArgumentException("Status must be positive: " + status);
+        }
+        final long stamp = lock.writeLock();
+        try {
+            if (slotOf(table, capacity, itemId.getMostSignificantBits(), itemId.getLeastSignificantBits()) >= 0) {
+                return false;
+            }
+            ensureCapacity();
+            insert(itemId.getMostSignificantBits(), itemId.getLeastSignificantBits(), status);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(final UUID itemId) {
+        final long stamp = lock.writeLock();
+        try {
+            final int slot = slotOf(table, capacity, itemId.getMostSignificantBits(), itemId.getLeastSignificantBits());
+            if (slot >= 0) {
+                table.put(slot * SLOT_SIZE + STATUS_OFFSET, DELETED);
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove every matching item, rebuilding the table without them.
+     */
+    public void removeIf(final Predicate<UUID> filter) {
+        final long stamp = lock.writeLock();
+        try {
+            rehash(capacity, filter);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        final long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Bytes held by the table, which is the whole footprint of the index bar a few fields.
+     */
+    public long footprintBytes() {
+        return (long) capacity * SLOT_SIZE;
+    }
+
+    /**
+     * Takes the capacity from the buffer itself, so an optimistic read racing a resize stays within bounds.
+     */
+    private static byte find(final ByteBuffer table, final long msb, final long lsb) {
+        final int slot = slotOf(table, table.capacity() / SLOT_SIZE, msb, lsb);
+        return slot >= 0 ? table.get(slot * SLOT_SIZE + STATUS_OFFSET) : EMPTY;
+    }
+
+    private static int slotOf(final ByteBuffer table, final int capacity, final long msb, final long lsb) {
+        final int mask = capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            final int offset = slot * SLOT_SIZE;
+            final byte status = table.get(offset + STATUS_OFFSET);
+            if (status == EMPTY) {
+                return -1;
+            }
+            if (status != DELETED && table.getLong(offset) == msb && table.getLong(offset + 8) == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(final long msb, final long lsb, final byte status) {
+        final int mask = capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        int firstDeleted = -1;
+        while (true) {
+            final int offset = slot * SLOT_SIZE;
+            final byte current = table.get(offset + STATUS_OFFSET);
+            if (current == EMPTY) {
+                break;
+            }
+            if (current == DELETED) {
+                if (firstDeleted < 0) {
+                    firstDeleted = slot;
+                }
+            } else if (table.getLong(offset) == msb && table.getLong(offset + 8) == lsb) {
+                table.put(offset + STATUS_OFFSET, status);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (firstDeleted >= 0) {
+            slot = firstDeleted;
+        } else {
+            used++;
+        }
+        final int offset = slot * SLOT_SIZE;
+        table.putLong(offset, msb);
+        table.putLong(offset + 8, lsb);
+        table.put(offset + STATUS_OFFSET, status);
+        size++;
+    }
+
+    /**
+     * Make room for one more slot, doubling the table unless it is mostly deleted slots.
+     *
+     * @throws IllegalStateException if the table is at its maximum capacity
+     */
+    private void ensureCapacity() {
+        if (used + 1 > capacity * MAX_LOAD) {
+            final boolean grow = size + 1 > capacity * MAX_LOAD / 2;
+            if (grow && capacity >= maxCapacity) {
+                throw new IllegalStateException("Item index is full at " + size + " items");
+            }
+            rehash(grow ? capacity * 2 : capacity, null);
+        }
+    }
+
+    private void rehash(final int newCapacity, final Predicate<UUID> exclude) {
+        final ByteBuffer old = table;
+        final int oldCapacity = capacity;
+        table = allocate(newCapacity);
+        capacity = newCapacity;
+        size = 0;
+        used = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            final int offset = slot * SLOT_SIZE;
+            final byte status = old.get(offset + STATUS_OFFSET);
+            if (status != EMPTY && status != DELETED) {
+                final long msb = old.getLong(offset);
+                final long lsb = old.getLong(offset + 8);
+                if (exclude == null || !exclude.test(new UUID(msb, lsb))) {
+                    insert(msb, lsb, status);
+                }
+            }
+        }
+    }
+
+    private ByteBuffer allocate(final int slots) {
+        final int bytes = Math.multiplyExact(slots, SLOT_SIZE);
+        return offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+    }
+
+    /**
+     * Murmur3 finaliser over both halves, as version 4 UUIDs carry fixed version and variant bits.
+     */
+    private static int hash(final long msb, final long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static int tableSizeFor(final int slots) {
+        return Integer.highestOneBit(Math.max(slots - 1, 1)) << 1;
+    }
+}
@@ -0,0 +1,265 @@
+package demo.state;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import demo.repository.ItemRepository;
+import demo.repository.ItemStatusView;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the item state store in step with the create-item partitions assigned to this instance.
+ *
+ * Registered on the shared container factory, so assignments for the other topics are ignored.  The items for newly
+ * assigned partitions are loaded off the consumer thread, as the id and status only, a page at a time, so that loading a
+ * large table does not hold up polling beyond max.poll.interval.ms and trigger a further rebalance.  Until loaded the
+ * callers fall back to the database for those partitions.
+ *
+ * A revoked partition's items are kept for a while, and should it be assigned back to this instance, as when it moves
+ * between this instance's consumers, with its committed offset unchanged, so no other instance has consumed its creates
+ * meanwhile, it is reclaimed without a load.  The table is read by one scan at a time: partitions assigned while a scan
+ * is running join it, and once it reaches the end it carries on from the start only up to where they joined.
+ */
+@Slf4j
+@Component
+public class ItemStateRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final ItemStateStore itemStateStore;
+
+    private final ItemRepository itemRepository;
+
+    private final String itemCreateTopic;
+
+    private final int loadBatchSize;
+
+    private final long releaseMilliseconds;
+
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    /**
+     * The committed offset of each released partition when it was revoked.
+     */
+    private final Map<Integer, Release> released = new HashMap<>();
+
+    /**
+     * Partitions to be loaded, with their generation, not yet joined to the scan.
+     */
+    private final Map<Integer, Long> pending = new HashMap<>();
+
+    private boolean scanning;
+
+    public ItemStateRebalanceListener(final ItemStateStore itemStateStore,
+                                      final ItemRepository itemRepository,
+                                      @Value("${demo.topics.itemCreateTopic}") final String itemCreateTopic,
+                                      @Value("${demo.state.loadBatchSize:10000}") final int loadBatchSize,
+                                      @Value("${demo.state.releaseMilliseconds:60000}") final long releaseMilliseconds) {
+        this.itemStateStore = itemStateStore;
+        this.itemRepository = itemRepository;
+        this.itemCreateTopic = itemCreateTopic;
+        this.loadBatchSize = loadBatchSize;
+        this.releaseMilliseconds = releaseMilliseconds;
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        this.taskScheduler.setThreadNamePrefix("item-state-load-");
+        this.taskScheduler.initialize();
+    }
+
+    @Override
+    public void onPartitionsAssigned(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        final List<Integer> assigned = createItemPartitions(partitions);
+        if (!itemStateStore.isEnabled() || assigned.isEmpty()) {
+            return;
+        }
+        final Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(topicPartitions(assigned));
+        final int partitionCount = consumer.partitionsFor(itemCreateTopic).size();
+        // Locked against the eviction of released partitions.
+        synchronized (this) {
+            final List<Integer> toLoad = new ArrayList<>();
+            for (Integer partition : assigned) {
+                final Release release = released.remove(partition);
+                if (release != null) {
+                    if (Objects.equals(release.committedOffset, offsetOf(committed.get(new TopicPartition(itemCreateTopic, partition))))
+                            && itemStateStore.reclaim(partition)) {
+                        log.info("Item state store reclaimed partition {}", partition);
+                        continue;
+                    }
+                    itemStateStore.revoke(List.of(partition));
+                }
+                if (!itemStateStore.isHeld(partition)) {
+                    toLoad.add(partition);
+                }
+            }
+            if (!toLoad.isEmpty()) {
+                load(toLoad, itemStateStore.assign(toLoad, partitionCount));
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        final List<Integer> revoked = createItemPartitions(partitions);
+        if (!itemStateStore.isEnabled() || revoked.isEmpty()) {
+            return;
+        }
+        final Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(topicPartitions(revoked));
+        synchronized (this) {
+            for (Integer partition : itemStateStore.release(revoked)) {
+                final Release release = new Release(offsetOf(committed.get(new TopicPartition(itemCreateTopic, partition))));
+                released.put(partition, release);
+                taskScheduler.schedule(() -> evict(partition, release), Instant.now().plusMillis(releaseMilliseconds));
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        final List<Integer> lost = createItemPartitions(partitions);
+        synchronized (this) {
+            lost.forEach(released::remove);
+            itemStateStore.revoke(lost);
+        }
+    }
+
+    /**
+     * Drop the items of a partition not assigned back to this instance since it was released.
+     */
+    private synchronized void evict(final int partition, final Release release) {
+        if (released.remove(partition, release)) {
+            itemStateStore.revoke(List.of(partition));
+        }
+    }
+
+    /**
+     * Add the partitions to the running scan, or start one.
+     */
+    synchronized void load(final List<Integer> partitions, final long generation) {
+        partitions.forEach(partition -> pending.put(partition, generation));
+        if (!scanning) {
+            scanning = true;
+            taskScheduler.execute(this::scan);
+        }
+    }
+
+    /**
+     * Page through the item statuses by id, as each page is then a short index range scan whatever the table size.  A
+     * partition is loaded once the scan has read every page from where it joined round to where it joined again.
+     */
+    private void scan() {
+        final Map<Integer, Load> loads = new HashMap<>();
+        UUID cursor = null;
+        try {
+            int loaded = 0;
+            while (true) {
+                synchronized (this) {
+                    for (Map.Entry<Integer, Long> entry : pending.entrySet()) {
+                        loads.put(entry.getKey(), new Load(entry.getValue(), cursor));
+                    }
+                    pending.clear();
+                    if (loads.isEmpty()) {
+                        scanning = false;
+                        return;
+                    }
+                }
+                final List<ItemStatusView> page = cursor == null
+                        ? itemRepository.findByOrderByIdAsc(PageRequest.of(0, loadBatchSize))
+                        : itemRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, loadBatchSize));
+                final Set<UUID> pageIds = page.stream().map(ItemStatusView::getId).collect(Collectors.toSet());
+                for (ItemStatusView item : page) {
+                    if (itemStateStore.load(item.getId(), item.getStatus())) {
+                        loaded++;
+                    }
+                }
+                final boolean end = page.size() < loadBatchSize;
+                final Iterator<Map.Entry<Integer, Load>> iterator = loads.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    final Map.Entry<Integer, Load> entry = iterator.next();
+                    final Load load = entry.getValue();
+                    // Should the row it joined at have since been deleted, the partition is complete at the end instead.
+                    if ((load.wrapped && pageIds.contains(load.startId)) || (end && (load.startId == null || load.wrapped))) {
+                        itemStateStore.loaded(List.of(entry.getKey()), load.generation);
+                        iterator.remove();
+                        log.info("Item state store loaded partition {}", entry.getKey());
+                    } else if (end) {
+                        load.wrapped = true;
+                    }
+                }
+                cursor = end ? null : page.get(page.size() - 1).getId();
+                if (end) {
+                    log.info("Item state store scan reached the end of the items, having loaded {}", loaded);
+                    loaded = 0;
+                }
+            }
+        } catch (Exception e) {
+            // Left loading, so never authoritative, and the callers keep falling back to the database.
+            log.error("Item state store failed to load partitions {}: {}", loads.keySet(), e.getMessage());
+            synchronized (this) {
+                pending.clear();
+                scanning = false;
+            }
+        }
+    }
+
+    private List<Integer> createItemPartitions(final Collection<TopicPartition> partitions) {
+        return partitions.stream()
+                .filter(tp -> tp.topic().equals(itemCreateTopic))
+                .map(TopicPartition::partition)
+                .collect(Collectors.toList());
+    }
+
+    private Set<TopicPartition> topicPartitions(final List<Integer> partitions) {
+        return partitions.stream()
+                .map(partition -> new TopicPartition(itemCreateTopic, partition))
+                .collect(Collectors.toSet());
+    }
+
+    private static Long offsetOf(final OffsetAndMetadata offset) {
+        return offset == null ? null : offset.offset();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        taskScheduler.shutdown();
+    }
+
+    /**
+     * Compared by identity, so that the eviction of an earlier release leaves a later one alone.
+     */
+    private static class Release {
+        final Long committedOffset;
+
+        Release(final Long committedOffset) {
+            this.committedOffset = committedOffset;
+        }
+    }
+
+    /**
+     * A partition being loaded by the scan, from the id the scan had reached when it joined, null for the start.
+     */
+    private static class Load {
+        final long generation;
+        final UUID startId;
+        boolean wrapped;
+
+        Load(final long generation, final UUID startId) {
+            this.generation = generation;
+            this.startId = startId;
+        }
+    }
+}
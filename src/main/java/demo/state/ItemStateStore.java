@@ -0,0 +1,238 @@
+package demo.state;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import demo.service.ItemStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory materialized view of item status, scoped to the create-item topic partitions assigned to this instance.
+ *
+ * Every create for an item lands on the partition derived from its key, so once a partition has been loaded from the
+ * database (off the consumer thread) and is kept current by the create consumer, the store is authoritative for items on that partition: an item
+ * that is absent really does not exist yet.  For items on partitions owned by another instance the callers must fall
+ * back to the database.  A present item's status may lag an update applied by another instance, via the update or
+ * retry partitions it owns, so callers must not write or return a cached status without checking the database.
+ *
+ * Revoked partitions are released rather than dropped at first, so that a partition moving between this instance's
+ * consumers is reclaimed with its items rather than loaded again.
+ *
+ * Statuses are held in a compact {@link ItemIdIndex} rather than a map of boxed UUIDs, so that tens of millions of items
+ * can be held, optionally off-heap.  Should the index fill up, the partition of the item that does not fit is given up,
+ * so its items are looked up in the database instead.
+ *
+ * This relies on the create-item events being keyed by item id.  The consumers check each create against the partition
+ * its item id maps to, and on finding one that is not the store stops answering for any item, falling back to the
+ * database, rather than report items created on another instance's partitions as missing.
+ */
+@Slf4j
+@Component
+public class ItemStateStore {
+
+    private final boolean enabled;
+
+    private final ItemIdIndex items;
+
+    private final Set<Integer> ownedPartitions = ConcurrentHashMap.newKeySet();
+
+    private final Map<Integer, Long> loadingPartitions = new ConcurrentHashMap<>();
+
+    private final Set<Integer> releasedPartitions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong generations = new AtomicLong();
+
+    private volatile int partitionCount;
+
+    private volatile boolean keyedByItemId = true;
+
+    @Autowired
+    public ItemStateStore(@Value("${demo.state.enabled:false}") final boolean enabled,
+                          @Value("${demo.state.initialCapacity:1024}") final int initialCapacity,
+                          @Value("${demo.state.offHeap:false}") final boolean offHeap) {
+        this(enabled, new ItemIdIndex(enabled ? initialCapacity : 0, offHeap));
+    }
+
+    ItemStateStore(final boolean enabled, final ItemIdIndex items) {
+        this.enabled = enabled;
+        this.items = items;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the store can answer for this item without a database lookup, including answering that it is missing.
+     */
+    public boolean isAuthoritativeFor(final UUID itemId) {
+        return enabled && keyedByItemId && partitionCount > 0 && ownedPartitions.contains(partitionFor(itemId));
+    }
+
+    /**
+     * Check that a create was consumed from the partition its item id maps to, and if not stop answering for any item.
+     */
+    public void checkPartition(final UUID itemId, final int partition) {
+        if (!enabled || !keyedByItemId || partitionCount == 0) {
+            return;
+        }
+        final int expected = partitionFor(itemId);
+        if (partition != expected) {
+            keyedByItemId = false;
+            log.error("Create for item {} consumed from partition {} rather than {} - create-item events are not keyed by item id, "
+                    + "so the item state store is falling back to the database", itemId, partition, expected);
+        }
+    }
+
+    public Optional<ItemStatus> getStatus(final UUID itemId) {
+        final byte status = items.get(itemId);
+        return status == 0 ? Optional.empty() : Optional.of(ItemStatus.values()[status - 1]);
+    }
+
+    public void put(final UUID itemId, final ItemStatus status) {
+        if (isAuthoritativeFor(itemId) || isLoading(itemId) || isReleased(itemId)) {
+            try {
+                items.put(itemId, toByte(status));
+            } catch (IllegalStateException e) {
+                overflow(itemId, e);
+            }
+        }
+    }
+
+    public void evict(final UUID itemId) {
+        items.remove(itemId);
+    }
+
+    /**
+     * Start loading newly assigned partitions.  Until {@link #loaded} the store is not authoritative for them, but keeps
+     * the items created and updated meanwhile, which the load does not overwrite.
+     *
+     * @return the generation of this assignment, to pass to {@link #loaded}
+     */
+    public long assign(final Collection<Integer> partitions, final int partitionCount) {
+        final long generation = generations.incrementAndGet();
+        if (!enabled || partitions.isEmpty()) {
+            return generation;
+        }
+        this.partitionCount = partitionCount;
+        partitions.forEach(partition -> loadingPartitions.put(partition, generation));
+        return generation;
+    }
+
+    /**
+     * Add an item read by the load, unless it is on a partition not being loaded or has since been created or updated.
+     *
+     * @return whether the item was added
+     */
+    public boolean load(final UUID itemId, final ItemStatus status) {
+        try {
+            return isLoading(itemId) && items.putIfAbsent(itemId, toByte(status));
+        } catch (IllegalStateException e) {
+            overflow(itemId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Mark the loaded partitions as owned, unless they have since been revoked (and possibly assigned again).
+     */
+    public void loaded(final Collection<Integer> partitions, final long generation) {
+        for (Integer partition : partitions) {
+            if (loadingPartitions.remove(partition, generation)) {
+                ownedPartitions.add(partition);
+            }
+        }
+    }
+
+    /**
+     * Whether the partition is owned or loading, so needs no load on being assigned.
+     */
+    public boolean isHeld(final int partition) {
+        return ownedPartitions.contains(partition) || loadingPartitions.containsKey(partition);
+    }
+
+    /**
+     * Stop answering for revoked partitions but keep their items, so that a partition assigned back to this instance
+     * before another has consumed it can be {@link #reclaim reclaimed} without a load.  Partitions not yet loaded are
+     * revoked.
+     *
+     * @return the partitions released
+     */
+    public List<Integer> release(final Collection<Integer> partitions) {
+        if (!enabled || partitions.isEmpty()) {
+            return List.of();
+        }
+        final List<Integer> released = partitions.stream().filter(ownedPartitions::remove).collect(Collectors.toList());
+        releasedPartitions.addAll(released);
+        revoke(partitions.stream().filter(partition -> !released.contains(partition)).collect(Collectors.toList()));
+        return released;
+    }
+
+    /**
+     * Answer for a released partition again, with the items kept since it was released.
+     *
+     * @return whether the partition was still released, rather than since revoked
+     */
+    public boolean reclaim(final int partition) {
+        if (releasedPartitions.remove(partition)) {
+            ownedPartitions.add(partition);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stop answering for revoked partitions before dropping their items.
+     */
+    public void revoke(final Collection<Integer> partitions) {
+        if (!enabled || partitions.isEmpty()) {
+            return;
+        }
+        ownedPartitions.removeAll(partitions);
+        releasedPartitions.removeAll(partitions);
+        partitions.forEach(loadingPartitions::remove);
+        items.removeIf(itemId -> partitions.contains(partitionFor(itemId)));
+        log.info("Item state store evicted partitions {}", partitions);
+    }
+
+    /**
+     * The index is full, so the item cannot be held, and the store must stop answering for its partition rather than
+     * report the item as missing.  Its partition's items are dropped to make room for the other partitions.
+     */
+    private void overflow(final UUID itemId, final IllegalStateException e) {
+        final int partition = partitionFor(itemId);
+        log.error("Item state store full - falling back to the database for partition {}: {}", partition, e.getMessage());
+        revoke(List.of(partition));
+    }
+
+    private boolean isLoading(final UUID itemId) {
+        return enabled && partitionCount > 0 && loadingPartitions.containsKey(partitionFor(itemId));
+    }
+
+    private boolean isReleased(final UUID itemId) {
+        return enabled && partitionCount > 0 && releasedPartitions.contains(partitionFor(itemId));
+    }
+
+    private static byte toByte(final ItemStatus status) {
+        return (byte) (status.ordinal() + 1);
+    }
+
+    /**
+     * Matches the default producer partitioner for a record keyed by the item id.
+     */
+    int partitionFor(final UUID itemId) {
+        return Utils.toPositive(Utils.murmur2(itemId.toString().getBytes(StandardCharsets.UTF_8))) % partitionCount;
+    }
+}
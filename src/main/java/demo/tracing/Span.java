@@ -0,0 +1,92 @@
+package demo.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.core.NestedExceptionUtils;
+
+/**
+ * A timed operation within a trace, current on its thread from when it is started until it is closed.
+ *
+ * The spans of a trace that is not sampled only carry its context on, so are neither timed nor exported.
+ */
+public class Span implements AutoCloseable {
+
+    /**
+     * Returned for a child of a span that is not sampled, or when there is no current span.
+     */
+    static final Span NOOP = new Span(null, null, 0, null, null);
+
+    private final Tracer tracer;
+    private final TraceContext context;
+    private final long parentSpanId;
+    private final String name;
+    private final Span previous;
+    private final long startTimestamp;
+    private final long startNanos;
+
+    private Map<String, String> tags;
+    private boolean closed;
+
+    Span(final Tracer tracer, final TraceContext context, final long parentSpanId, final String name, final Span previous) {
+        this.tracer = tracer;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.previous = previous;
+        final boolean timed = context != null && context.isSampled();
+        this.startTimestamp = timed ? System.currentTimeMillis() : 0;
+        this.startNanos = timed ? System.nanoTime() : 0;
+    }
+
+    public TraceContext getContext() {
+        return context;
+    }
+
+    Span getPrevious() {
+        return previous;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    public Span tag(final String key, final String value) {
+        if (context != null && context.isSampled()) {
+            if (tags == null) {
+                tags = new LinkedHashMap<>();
+            }
+            tags.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Tag the span with the root cause, rather than the listener failure wrapping it.
+     */
+    public Span error(final Throwable error) {
+        final Throwable cause = NestedExceptionUtils.getMostSpecificCause(error);
+        return tag("error", cause.getClass().getSimpleName() + ": " + cause.getMessage());
+    }
+
+    @Override
+    public void close() {
+        if (this == NOOP || closed) {
+            return;
+        }
+        closed = true;
+        tracer.finish(this);
+    }
+
+    SpanData toData() {
+        return SpanData.builder()
+                .traceId(TraceContext.toHex(context.getTraceId()))
+                .spanId(TraceContext.toHex(context.getSpanId()))
+                .parentSpanId(parentSpanId == 0 ? null : TraceContext.toHex(parentSpanId))
+                .name(name)
+                .startTimestamp(startTimestamp)
+                .durationMicros((System.nanoTime() - startNanos) / 1000)
+                .tags(tags == null ? Map.of() : tags)
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package demo.tracing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A local stand-in for a trace collector, holding the spans of the most recent traces in memory, grouped by trace.
+ *
+ * Once the limit is reached, the trace that started earliest is dropped to make room for each new one.
+ */
+@Component
+public class SpanCollector implements SpanExporter {
+
+    private final Map<String, List<SpanData>> traces;
+
+    public SpanCollector(@Value("${demo.tracing.maxTraces}") final int maxTraces) {
+        this.traces = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, List<SpanData>> eldest) {
+                return size() > maxTraces;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void export(final SpanData span) {
+        traces.computeIfAbsent(span.getTraceId(), traceId -> new ArrayList<>()).add(span);
+    }
+
+    /**
+     * The spans of each trace, by trace id, earliest trace first.
+     */
+    public synchronized Map<String, List<SpanData>> getTraces() {
+        final Map<String, List<SpanData>> copy = new LinkedHashMap<>();
+        traces.forEach((traceId, spans) -> copy.put(traceId, List.copyOf(spans)));
+        return copy;
+    }
+
+    /**
+     * The spans of the trace, in the order they finished.
+     */
+    public synchronized List<SpanData> getTrace(final String traceId) {
+        return List.copyOf(traces.getOrDefault(traceId, List.of()));
+    }
+}
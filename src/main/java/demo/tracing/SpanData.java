@@ -0,0 +1,31 @@
+package demo.tracing;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A finished span, as exported.
+ */
+@Builder
+@Value
+public class SpanData {
+
+    String traceId;
+
+    String spanId;
+
+    /**
+     * Null for the first span of a trace.
+     */
+    String parentSpanId;
+
+    String name;
+
+    long startTimestamp;
+
+    long durationMicros;
+
+    Map<String, String> tags;
+}
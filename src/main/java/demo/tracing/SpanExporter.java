@@ -0,0 +1,9 @@
+package demo.tracing;
+
+/**
+ * Receives each sampled span as it finishes, on the thread that finished it.
+ */
+public interface SpanExporter {
+
+    void export(SpanData span);
+}
@@ -0,0 +1,52 @@
+package demo.tracing;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import lombok.Value;
+
+/**
+ * The trace an event belongs to, the span that last handled it, and whether the trace is sampled.
+ *
+ * Carried in the {@code trace-context} header as 17 bytes: the trace id and span id as 8 bytes each, then a flags byte.
+ */
+@Value
+public class TraceContext {
+
+    static final int LENGTH = 17;
+
+    private static final byte SAMPLED = 1;
+
+    long traceId;
+
+    /**
+     * Zero for a trace with no span yet.
+     */
+    long spanId;
+
+    boolean sampled;
+
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(LENGTH)
+                .putLong(traceId)
+                .putLong(spanId)
+                .put(sampled ? SAMPLED : 0)
+                .array();
+    }
+
+    /**
+     * @return empty if the header value is not a trace context
+     */
+    public static Optional<TraceContext> fromBytes(final byte[] value) {
+        if (value == null || value.length != LENGTH) {
+            return Optional.empty();
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(value);
+        return Optional.of(new TraceContext(buffer.getLong(), buffer.getLong(), (buffer.get() & SAMPLED) != 0));
+    }
+
+    static String toHex(final long id) {
+        final String hex = Long.toHexString(id);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+}
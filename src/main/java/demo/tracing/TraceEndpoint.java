@@ -0,0 +1,32 @@
+package demo.tracing;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the spans of the most recent sampled traces at {@code /actuator/traces}, and of a single trace at
+ * {@code /actuator/traces/{traceId}}.
+ */
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "traces")
+public class TraceEndpoint {
+
+    private final SpanCollector spanCollector;
+
+    @ReadOperation
+    public Map<String, List<SpanData>> traces() {
+        return spanCollector.getTraces();
+    }
+
+    @ReadOperation
+    public List<SpanData> trace(@Selector final String traceId) {
+        return spanCollector.getTrace(traceId);
+    }
+}
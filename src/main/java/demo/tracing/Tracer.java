@@ -0,0 +1,142 @@
+package demo.tracing;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import demo.consumer.MessageHeaders;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts spans, tracks the current span on each thread, and carries the trace context in and out of Kafka headers.
+ *
+ * Whether a trace is sampled is decided once, when an event without a trace context is first received, and carried on
+ * with it through every retry and the dead letter topic, so a trace is recorded either whole or not at all.
+ */
+@Component
+public class Tracer {
+
+    private final SpanExporter exporter;
+    private final double sampleRate;
+
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+
+    public Tracer(final SpanExporter exporter,
+                  @Value("${demo.tracing.sampleRate}") final double sampleRate) {
+        this.exporter = exporter;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * The trace context carried by the headers, or a new trace if there is none.
+     */
+    public TraceContext extract(final Headers headers) {
+        final Header header = headers.lastHeader(MessageHeaders.TRACE_CONTEXT);
+        if (header != null) {
+            final TraceContext context = TraceContext.fromBytes(header.value()).orElse(null);
+            if (context != null) {
+                return context;
+            }
+        }
+        return new TraceContext(nextId(), 0, ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Replace any trace context in the headers with the current span's, so that the span is the parent of the next hop.
+     */
+    public void inject(final Headers headers) {
+        final Span span = current.get();
+        if (span != null) {
+            headers.remove(MessageHeaders.TRACE_CONTEXT);
+            headers.add(MessageHeaders.TRACE_CONTEXT, span.getContext().toBytes());
+        }
+    }
+
+    /**
+     * Start a span, as the current span, in the given trace.
+     */
+    public Span startSpan(final String name, final TraceContext parent) {
+        final Span span = new Span(this, new TraceContext(parent.getTraceId(), nextId(), parent.isSampled()), parent.getSpanId(), name, current.get());
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Start a span as a child of the current span, if there is one and it is sampled.
+     */
+    public Span startSpan(final String name) {
+        final Span parent = current.get();
+        if (parent == null || !parent.getContext().isSampled()) {
+            return Span.NOOP;
+        }
+        return startSpan(name, parent.getContext());
+    }
+
+    /**
+     * Make the call within a child span of the current span.
+     */
+    public <T> T trace(final String name, final Supplier<T> call) {
+        final Span span = startSpan(name);
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Record a span for an interval that has already passed, such as the time an event waited on a topic.
+     */
+    public void recordSpan(final String name, final TraceContext parent, final long startTimestamp, final long endTimestamp,
+                           final Map<String, String> tags) {
+        if (!parent.isSampled()) {
+            return;
+        }
+        exporter.export(SpanData.builder()
+                .traceId(TraceContext.toHex(parent.getTraceId()))
+                .spanId(TraceContext.toHex(nextId()))
+                .parentSpanId(parent.getSpanId() == 0 ? null : TraceContext.toHex(parent.getSpanId()))
+                .name(name)
+                .startTimestamp(startTimestamp)
+                .durationMicros(Math.max(0, endTimestamp - startTimestamp) * 1000)
+                .tags(tags)
+                .build());
+    }
+
+    /**
+     * @return null if there is no current span
+     */
+    public Span currentSpan() {
+        return current.get();
+    }
+
+    void finish(final Span span) {
+        // Skipping any enclosing span already closed out of order.
+        Span previous = span.getPrevious();
+        while (previous != null && previous.isClosed()) {
+            previous = previous.getPrevious();
+        }
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+        if (span.getContext().isSampled()) {
+            exporter.export(span.toData());
+        }
+    }
+
+    private static long nextId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+}
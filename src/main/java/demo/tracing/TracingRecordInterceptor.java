@@ -0,0 +1,69 @@
+package demo.tracing;
+
+import java.util.Map;
+import java.util.Optional;
+
+import demo.retry.RetryTimingRecordInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Traces each hop of an event, whether on its original topic, a retry topic or a dead letter topic.
+ *
+ * Records the time the event waited on the topic, from when it was published there until it was consumed, and times its
+ * processing as the current span.  The record's trace context is replaced with the processing span's before the
+ * listener is invoked, so that the retry or dead letter record published from it, which carries its headers on, is a
+ * child of that span.
+ *
+ * A retry delivered before it is due is paused and redelivered, so only its delivery once due is traced.
+ */
+@RequiredArgsConstructor
+@Component
+public class TracingRecordInterceptor implements RecordInterceptor<String, String> {
+
+    private final Tracer tracer;
+
+    @Override
+    public ConsumerRecord<String, String> intercept(final ConsumerRecord<String, String> record, final Consumer<String, String> consumer) {
+        closeCurrentSpan();
+        final long now = System.currentTimeMillis();
+        final Optional<Long> dueTimestamp = RetryTimingRecordInterceptor.dueTimestamp(record.headers());
+        if (dueTimestamp.isPresent() && now < dueTimestamp.get()) {
+            return record;
+        }
+        final TraceContext parent = tracer.extract(record.headers());
+        tracer.recordSpan("wait " + record.topic(), parent, record.timestamp(), now, Map.of("topic", record.topic()));
+        tracer.startSpan("process " + record.topic(), parent)
+                .tag("topic", record.topic())
+                .tag("partition", String.valueOf(record.partition()))
+                .tag("offset", String.valueOf(record.offset()));
+        tracer.inject(record.headers());
+        return record;
+    }
+
+    @Override
+    public void failure(final ConsumerRecord<String, String> record, final Exception exception, final Consumer<String, String> consumer) {
+        final Span span = tracer.currentSpan();
+        if (span != null) {
+            span.error(exception);
+        }
+    }
+
+    @Override
+    public void afterRecord(final ConsumerRecord<String, String> record, final Consumer<String, String> consumer) {
+        closeCurrentSpan();
+    }
+
+    /**
+     * Close any span left open by the previous record, including those started within it.
+     */
+    private void closeCurrentSpan() {
+        Span span;
+        while ((span = tracer.currentSpan()) != null) {
+            span.close();
+        }
+    }
+}
@@ -0,0 +1 @@
+ALTER TABLE kafka_retry_with_delay.item ALTER COLUMN status SET DATA TYPE varchar(16);
@@ -0,0 +1,137 @@
+package demo.autoscaling;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ListenerConcurrencyControllerTest {
+
+    private static final String LISTENER_ID = "update-item-listener";
+
+    private KafkaListenerEndpointRegistry registryMock;
+    private ConcurrentMessageListenerContainer<?, ?> containerMock;
+    private Metric lagMetricMock;
+    private SimpleMeterRegistry meterRegistry;
+    private ListenerConcurrencyController controller;
+
+    @BeforeEach
+    public void setUp() {
+        registryMock = mock(KafkaListenerEndpointRegistry.class);
+        containerMock = mock(ConcurrentMessageListenerContainer.class);
+        lagMetricMock = mock(Metric.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(registryMock.getListenerContainers()).thenReturn(List.of(containerMock));
+        when(containerMock.getListenerId()).thenReturn(LISTENER_ID);
+        when(containerMock.isRunning()).thenReturn(true);
+        when(containerMock.getConcurrency()).thenReturn(1);
+        when(containerMock.getContainerProperties()).thenReturn(new ContainerProperties("update-item"));
+        when(containerMock.getAssignedPartitions()).thenReturn(List.of(new TopicPartition("update-item", 0),
+                new TopicPartition("update-item", 1), new TopicPartition("update-item", 2), new TopicPartition("update-item", 3),
+                new TopicPartition("update-item", 4), new TopicPartition("update-item", 5)));
+        final MetricName lagMetricName = new MetricName("records-lag", "consumer-fetch-manager-metrics", "",
+                Map.of("topic", "update-item", "partition", "0"));
+        when(containerMock.metrics()).thenReturn(Map.<String, Map<MetricName, ? extends Metric>>of("consumer-0", Map.of(lagMetricName, lagMetricMock)));
+        controller = new ListenerConcurrencyController(registryMock, meterRegistry, "retry", 1000, 60000, 30000, 1, 6, 1, 2);
+    }
+
+    /**
+     * 1000 records behind at 100ms each needs 4 consumers to clear within 30 seconds.
+     */
+    @Test
+    public void testEvaluate_ScaleUp() {
+        when(lagMetricMock.metricValue()).thenReturn(1000.0);
+        recordProcessing(10, 100);
+
+        controller.evaluate();
+
+        final ConcurrencyDecision decision = controller.getDecisions().get(LISTENER_ID);
+        assertThat(decision.getAction(), equalTo(ConcurrencyDecision.Action.SCALE_UP));
+        assertThat(decision.getTier(), equalTo(ListenerConcurrencyController.MAIN_TIER));
+        assertThat(decision.getLag(), equalTo(1000L));
+        assertThat(decision.getMeanProcessingMillis(), equalTo(100.0));
+        assertThat(decision.getDesiredConcurrency(), equalTo(4));
+
+        final ArgumentCaptor<Runnable> stopped = ArgumentCaptor.forClass(Runnable.class);
+        verify(containerMock).stop(stopped.capture());
+        assertThat(controller.isRestarting(LISTENER_ID), equalTo(true));
+        stopped.getValue().run();
+        verify(containerMock, timeout(1000)).setConcurrency(4);
+        Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> !controller.isRestarting(LISTENER_ID));
+    }
+
+    /**
+     * Lag on a paused partition is a retry waiting until due, so is not scaled for.
+     */
+    @Test
+    public void testEvaluate_PausedPartition() {
+        when(lagMetricMock.metricValue()).thenReturn(1000.0);
+        when(containerMock.isPartitionPaused(new TopicPartition("update-item", 0))).thenReturn(true);
+        recordProcessing(10, 100);
+
+        controller.evaluate();
+
+        final ConcurrencyDecision decision = controller.getDecisions().get(LISTENER_ID);
+        assertThat(decision.getAction(), equalTo(ConcurrencyDecision.Action.HOLD));
+        assertThat(decision.getLag(), equalTo(0L));
+        verify(containerMock, never()).stop(any(Runnable.class));
+    }
+
+    /**
+     * A further change within the cooldown is held back.
+     */
+    @Test
+    public void testEvaluate_Cooldown() {
+        when(lagMetricMock.metricValue()).thenReturn(1000.0);
+        recordProcessing(10, 100);
+        controller.evaluate();
+        recordProcessing(10, 100);
+
+        controller.evaluate();
+
+        assertThat(controller.getDecisions().get(LISTENER_ID).getAction(), equalTo(ConcurrencyDecision.Action.COOLDOWN));
+        verify(containerMock).stop(any(Runnable.class));
+    }
+
+    @Test
+    public void testDesiredConcurrency() {
+        // Idle, so down to the minimum, one consumer at a time.
+        assertThat(ListenerConcurrencyController.desiredConcurrency(0, null, 30000, 4, 1, 6, 6), equalTo(3));
+        assertThat(ListenerConcurrencyController.desiredConcurrency(0, null, 30000, 1, 1, 6, 6), equalTo(1));
+        // Behind, but nothing processed over the interval.
+        assertThat(ListenerConcurrencyController.desiredConcurrency(1000, null, 30000, 2, 1, 6, 6), equalTo(2));
+        // Bounded by the maximum, and by the partitions.
+        assertThat(ListenerConcurrencyController.desiredConcurrency(100000, 100.0, 30000, 1, 1, 6, 10), equalTo(6));
+        assertThat(ListenerConcurrencyController.desiredConcurrency(100000, 100.0, 30000, 1, 1, 6, 3), equalTo(3));
+        assertThat(ListenerConcurrencyController.desiredConcurrency(100000, 100.0, 30000, 5, 1, 6, 3), equalTo(3));
+    }
+
+    private void recordProcessing(final int records, final long millis) {
+        final Timer timer = Timer.builder("spring.kafka.listener").tag("name", LISTENER_ID + "-0").register(meterRegistry);
+        for (int i=0; i<records; i++) {
+            timer.record(Duration.ofMillis(millis));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package demo.benchmark;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import demo.service.ItemStatus;
+import demo.state.ItemIdIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Compares lookup latency of the {@link ItemIdIndex} against a {@code ConcurrentHashMap<UUID, ItemStatus>}, for both
+ * hits and misses, and prints the retained memory of each for the same items.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath demo.benchmark.ItemIdIndexBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemIdIndexBenchmark {
+
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @Param({"1000000", "10000000"})
+    private int items;
+
+    private ConcurrentHashMap<UUID, ItemStatus> map;
+    private ItemIdIndex heapIndex;
+    private ItemIdIndex offHeapIndex;
+
+    private UUID[] present;
+    private UUID[] absent;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new ConcurrentHashMap<>(items);
+        heapIndex = new ItemIdIndex(items, false);
+        offHeapIndex = new ItemIdIndex(items, true);
+        present = new UUID[LOOKUP_KEYS];
+        absent = new UUID[LOOKUP_KEYS];
+        populate(items, map, heapIndex, offHeapIndex, present);
+        for (int i=0; i<LOOKUP_KEYS; i++) {
+            absent[i] = UUID.randomUUID();
+        }
+    }
+
+    @Benchmark
+    public ItemStatus mapHit() {
+        return map.get(present[nextKey()]);
+    }
+
+    @Benchmark
+    public ItemStatus mapMiss() {
+        return map.get(absent[nextKey()]);
+    }
+
+    @Benchmark
+    public byte heapIndexHit() {
+        return heapIndex.get(present[nextKey()]);
+    }
+
+    @Benchmark
+    public byte heapIndexMiss() {
+        return heapIndex.get(absent[nextKey()]);
+    }
+
+    @Benchmark
+    public byte offHeapIndexHit() {
+        return offHeapIndex.get(present[nextKey()]);
+    }
+
+    @Benchmark
+    public byte offHeapIndexMiss() {
+        return offHeapIndex.get(absent[nextKey()]);
+    }
+
+    private int nextKey() {
+        next = (next + 1) & (LOOKUP_KEYS - 1);
+        return next;
+    }
+
+    private static void populate(int items, Map<UUID, ItemStatus> map, ItemIdIndex heapIndex, ItemIdIndex offHeapIndex, UUID[] sample) {
+        final ItemStatus[] statuses = ItemStatus.values();
+        for (int i=0; i<items; i++) {
+            final UUID itemId = UUID.randomUUID();
+            final ItemStatus status = statuses[ThreadLocalRandom.current().nextInt(statuses.length)];
+            map.put(itemId, status);
+            if (heapIndex != null) {
+                heapIndex.put(itemId, (byte) (status.ordinal() + 1));
+            }
+            if (offHeapIndex != null) {
+                offHeapIndex.put(itemId, (byte) (status.ordinal() + 1));
+            }
+            if (sample != null && i < sample.length) {
+                sample[i] = itemId;
+            }
+        }
+    }
+
+    /**
+     * Print the memory comparison, then run the latency benchmarks.
+     */
+    public static void main(String[] args) throws Exception {
+        final int items = 1_000_000;
+        final ConcurrentHashMap<UUID, ItemStatus> map = new ConcurrentHashMap<>(items);
+        final ItemIdIndex index = new ItemIdIndex(items, false);
+        populate(items, map, index, null, null);
+
+        final long mapBytes = GraphLayout.parseInstance(map).totalSize();
+        final long indexBytes = GraphLayout.parseInstance(index).totalSize();
+        System.out.printf("Retained memory for %,d items:%n", items);
+        System.out.printf("  ConcurrentHashMap<UUID, ItemStatus>: %,d bytes (%.1f bytes/item)%n", mapBytes, (double) mapBytes / items);
+        System.out.printf("  ItemIdIndex:                         %,d bytes (%.1f bytes/item)%n", indexBytes, (double) indexBytes / items);
+
+        new Runner(new OptionsBuilder().include(ItemIdIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package demo.benchmark;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.event.UpdateItem;
+import demo.mapper.JsonMapper;
+import demo.service.ItemStatus;
+import demo.tracing.SpanCollector;
+import demo.tracing.Tracer;
+import demo.tracing.TracingRecordInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the tracing cost per record, at each sample rate, against the same record deserialized without tracing.
+ * The difference is the overhead to compare with the listener's processing time per record.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath demo.benchmark.TracingBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TracingBenchmark {
+
+    @Param({"0", "0.01", "1"})
+    private double sampleRate;
+
+    private String payload;
+    private Tracer tracer;
+    private TracingRecordInterceptor interceptor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = JsonMapper.writeToJson(UpdateItem.builder().id(UUID.randomUUID()).status(ItemStatus.ACTIVE).build());
+        tracer = new Tracer(new SpanCollector(1000), sampleRate);
+        interceptor = new TracingRecordInterceptor(tracer);
+    }
+
+    @Benchmark
+    public UpdateItem untraced() {
+        return JsonMapper.readFromJson(record().value(), UpdateItem.class);
+    }
+
+    @Benchmark
+    public UpdateItem traced() {
+        final ConsumerRecord<String, String> record = interceptor.intercept(record(), null);
+        final UpdateItem event = tracer.trace("deserialize", () -> JsonMapper.readFromJson(record.value(), UpdateItem.class));
+        tracer.trace("db lookup", event::getStatus);
+        interceptor.afterRecord(record, null);
+        return event;
+    }
+
+    private ConsumerRecord<String, String> record() {
+        return new ConsumerRecord<>("update-item", 0, 0, System.currentTimeMillis(), TimestampType.CREATE_TIME, 0, 0, null, payload,
+                new RecordHeaders(), Optional.empty());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TracingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,8 +1,12 @@
 package demo.consumer;
 
 import demo.event.CreateItem;
+import demo.hotkey.HotKeyTracker;
 import demo.mapper.JsonMapper;
 import demo.service.ItemService;
+import demo.state.ItemStateStore;
+import demo.tracing.SpanExporter;
+import demo.tracing.Tracer;
 import demo.util.TestEventData;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,12 +21,16 @@ import static org.mockito.Mockito.verify;
 public class CreateItemConsumerTest {
 
     private ItemService serviceMock;
+    private HotKeyTracker hotKeyTrackerMock;
+    private ItemStateStore itemStateStoreMock;
     private CreateItemConsumer consumer;
 
     @BeforeEach
     public void setUp() {
         serviceMock = mock(ItemService.class);
-        consumer = new CreateItemConsumer(serviceMock);
+        hotKeyTrackerMock = mock(HotKeyTracker.class);
+        itemStateStoreMock = mock(ItemStateStore.class);
+        consumer = new CreateItemConsumer(serviceMock, hotKeyTrackerMock, new Tracer(mock(SpanExporter.class), 0), itemStateStoreMock);
     }
 
     /**
@@ -33,9 +41,11 @@ public class CreateItemConsumerTest {
         CreateItem testEvent = TestEventData.buildCreateItemEvent(randomUUID(), RandomStringUtils.randomAlphabetic(8));
         String payload = JsonMapper.writeToJson(testEvent);
 
-        consumer.listen(payload);
+        consumer.listen(payload, "create-item", 0);
 
         verify(serviceMock, times(1)).createItem(testEvent);
+        verify(hotKeyTrackerMock, times(1)).record("create-item", 0, testEvent.getId());
+        verify(itemStateStoreMock, times(1)).checkPartition(testEvent.getId(), 0);
     }
 
     /**
@@ -50,7 +60,7 @@ public class CreateItemConsumerTest {
 
         doThrow(new RuntimeException("Service failure")).when(serviceMock).createItem(testEvent);
 
-        consumer.listen(payload);
+        consumer.listen(payload, "create-item", 0);
 
         verify(serviceMock, times(1)).createItem(testEvent);
     }
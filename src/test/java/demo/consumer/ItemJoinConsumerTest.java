@@ -0,0 +1,170 @@
+package demo.consumer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.exception.RetryableMessagingException;
+import demo.hotkey.HotKeyTracker;
+import demo.mapper.JsonMapper;
+import demo.retry.ConsolidatedRetryPublisher;
+import demo.service.ItemService;
+import demo.service.ItemStatus;
+import demo.state.ItemStateStore;
+import demo.util.TestEventData;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import static java.util.UUID.randomUUID;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemJoinConsumerTest {
+
+    private static final String CREATE_ITEM_TOPIC = "create-item";
+    private static final String UPDATE_ITEM_TOPIC = "update-item";
+    private static final TopicPartition CREATE_PARTITION = new TopicPartition(CREATE_ITEM_TOPIC, 0);
+    private static final TopicPartition UPDATE_PARTITION = new TopicPartition(UPDATE_ITEM_TOPIC, 0);
+    private static final long WINDOW = 500;
+
+    private ItemService serviceMock;
+    private ConsolidatedRetryPublisher retryPublisherMock;
+    private ItemStateStore itemStateStoreMock;
+    private MessageListenerContainer containerMock;
+    private Consumer<?, ?> consumerMock;
+    private ItemJoinConsumer consumer;
+
+    @BeforeEach
+    public void setUp() {
+        serviceMock = mock(ItemService.class);
+        retryPublisherMock = mock(ConsolidatedRetryPublisher.class);
+        itemStateStoreMock = mock(ItemStateStore.class);
+        containerMock = mock(MessageListenerContainer.class);
+        consumerMock = mock(Consumer.class);
+        final KafkaListenerEndpointRegistry registryMock = mock(KafkaListenerEndpointRegistry.class);
+        when(retryPublisherMock.isEnabled()).thenReturn(true);
+        when(registryMock.getListenerContainer(ItemJoinConsumer.LISTENER_ID)).thenReturn(containerMock);
+        when(consumerMock.assignment()).thenReturn(Set.of(CREATE_PARTITION, UPDATE_PARTITION));
+        when(consumerMock.currentLag(CREATE_PARTITION)).thenReturn(OptionalLong.of(0));
+        consumer = new ItemJoinConsumer(serviceMock, retryPublisherMock, mock(HotKeyTracker.class), itemStateStoreMock, registryMock,
+                CREATE_ITEM_TOPIC, UPDATE_ITEM_TOPIC, WINDOW, 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        consumer.shutdown();
+    }
+
+    /**
+     * An update received before the create it follows is applied after it, and both offsets are committed.
+     */
+    @Test
+    public void testListen_UpdateBeforeCreate() {
+        final long now = System.currentTimeMillis();
+        final UUID itemId = randomUUID();
+        final UpdateItem update = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+        final CreateItem create = TestEventData.buildCreateItemEvent(itemId, "item");
+
+        consumer.listen(List.of(record(UPDATE_ITEM_TOPIC, 7, now - WINDOW * 2, update),
+                record(CREATE_ITEM_TOPIC, 3, now - WINDOW * 3, create)), consumerMock);
+
+        final InOrder inOrder = inOrder(serviceMock);
+        inOrder.verify(serviceMock).createItem(create);
+        inOrder.verify(serviceMock).updateItem(update);
+        verify(itemStateStoreMock).checkPartition(itemId, 0);
+        verify(consumerMock).commitSync(Map.of(CREATE_PARTITION, new OffsetAndMetadata(4), UPDATE_PARTITION, new OffsetAndMetadata(8)));
+    }
+
+    /**
+     * An update within the reorder window of the creates consumed so far is held, by seeking back to it and pausing its
+     * partition, and is not committed.
+     */
+    @Test
+    public void testListen_HoldUpdate() {
+        when(consumerMock.currentLag(CREATE_PARTITION)).thenReturn(OptionalLong.of(5));
+        final UpdateItem update = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+
+        consumer.listen(List.of(record(UPDATE_ITEM_TOPIC, 7, System.currentTimeMillis(), update)), consumerMock);
+
+        verify(serviceMock, never()).updateItem(any());
+        verify(consumerMock).seek(UPDATE_PARTITION, 7);
+        verify(containerMock).pausePartition(UPDATE_PARTITION);
+        verify(consumerMock, never()).commitSync(anyMap());
+    }
+
+    /**
+     * The create watermark of a revoked partition is dropped, so an update within the reorder window of creates consumed
+     * before the rebalance is held once the partition is reassigned.
+     */
+    @Test
+    public void testListen_RevokedWatermark() {
+        when(consumerMock.currentLag(CREATE_PARTITION)).thenReturn(OptionalLong.of(5));
+        final long now = System.currentTimeMillis();
+        final CreateItem create = TestEventData.buildCreateItemEvent(randomUUID(), "item");
+        final UpdateItem update = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        consumer.listen(List.of(record(CREATE_ITEM_TOPIC, 3, now + WINDOW * 2, create)), consumerMock);
+
+        consumer.onPartitionsRevokedAfterCommit(consumerMock, List.of(CREATE_PARTITION, UPDATE_PARTITION));
+        consumer.listen(List.of(record(UPDATE_ITEM_TOPIC, 7, now, update)), consumerMock);
+
+        verify(serviceMock, never()).updateItem(any());
+        verify(consumerMock).seek(UPDATE_PARTITION, 7);
+    }
+
+    /**
+     * An update whose item is still not found once past the reorder window is retried.
+     */
+    @Test
+    public void testListen_GenuineRetry() {
+        final UpdateItem update = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        final String payload = JsonMapper.writeToJson(update);
+        doThrow(new RetryableMessagingException("Retry event.")).when(serviceMock).updateItem(update);
+
+        consumer.listen(List.of(record(UPDATE_ITEM_TOPIC, 7, System.currentTimeMillis() - WINDOW * 2, update)), consumerMock);
+
+        verify(retryPublisherMock).scheduleRetry(eq(UPDATE_ITEM_TOPIC), eq(update.getId().toString()), eq(payload), anyLong(), isNull());
+        verify(consumerMock).commitSync(Map.of(UPDATE_PARTITION, new OffsetAndMetadata(8)));
+    }
+
+    /**
+     * Genuine failures are retried via the consolidated retry topic, so it must be enabled.
+     */
+    @Test
+    public void testConsolidatedRetryRequired() {
+        when(retryPublisherMock.isEnabled()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> new ItemJoinConsumer(serviceMock, retryPublisherMock, mock(HotKeyTracker.class), itemStateStoreMock,
+                mock(KafkaListenerEndpointRegistry.class), CREATE_ITEM_TOPIC, UPDATE_ITEM_TOPIC, WINDOW, 100));
+    }
+
+    private static ConsumerRecord<String, String> record(final String topic, final long offset, final long timestamp, final Object event) {
+        final String key = event instanceof CreateItem create ? create.getId().toString() : ((UpdateItem) event).getId().toString();
+        return new ConsumerRecord<>(topic, 0, offset, timestamp, TimestampType.CREATE_TIME, 0, 0, key, JsonMapper.writeToJson(event),
+                new RecordHeaders(), Optional.empty());
+    }
+}
@@ -1,28 +1,56 @@
 package demo.consumer;
 
 import demo.event.UpdateItem;
+import demo.exception.RetryableMessagingException;
+import demo.hotkey.HotKeyLane;
+import demo.hotkey.HotKeyTracker;
 import demo.mapper.JsonMapper;
+import demo.retry.ConsolidatedRetryPublisher;
 import demo.service.ItemService;
 import demo.service.ItemStatus;
+import demo.tracing.SpanExporter;
+import demo.tracing.Tracer;
 import demo.util.TestEventData;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import static java.util.UUID.randomUUID;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class UpdateItemConsumerTest {
 
+    private static final String UPDATE_ITEM_TOPIC = "update-item";
+    private static final String KEY = "key";
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+
     private ItemService serviceMock;
+    private ConsolidatedRetryPublisher retryPublisherMock;
+    private HotKeyTracker hotKeyTrackerMock;
+    private HotKeyLane hotKeyLaneMock;
+    private Consumer<?, ?> consumerMock;
     private UpdateItemConsumer consumer;
 
     @BeforeEach
     public void setUp() {
         serviceMock = mock(ItemService.class);
-        consumer = new UpdateItemConsumer(serviceMock);
+        retryPublisherMock = mock(ConsolidatedRetryPublisher.class);
+        hotKeyTrackerMock = mock(HotKeyTracker.class);
+        hotKeyLaneMock = mock(HotKeyLane.class);
+        consumerMock = mock(Consumer.class);
+        consumer = new UpdateItemConsumer(serviceMock, retryPublisherMock, hotKeyTrackerMock, hotKeyLaneMock, new Tracer(mock(SpanExporter.class), 0));
+        ReflectionTestUtils.setField(consumer, "itemUpdateTopic", UPDATE_ITEM_TOPIC);
     }
 
     /**
@@ -33,9 +61,10 @@ public class UpdateItemConsumerTest {
         UpdateItem testEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
         String payload = JsonMapper.writeToJson(testEvent);
 
-        consumer.listen(payload);
+        consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC, 0, TIMESTAMP, consumerMock);
 
         verify(serviceMock, times(1)).updateItem(testEvent);
+        verify(hotKeyTrackerMock, times(1)).record(UPDATE_ITEM_TOPIC, 0, testEvent.getId());
     }
 
     /**
@@ -50,8 +79,92 @@ public class UpdateItemConsumerTest {
 
         doThrow(new RuntimeException("Service failure")).when(serviceMock).updateItem(testEvent);
 
-        consumer.listen(payload);
+        consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC, 0, TIMESTAMP, consumerMock);
+
+        verify(serviceMock, times(1)).updateItem(testEvent);
+    }
+
+    /**
+     * A retryable failure is rethrown so that the retry topics take the message.
+     */
+    @Test
+    public void testListen_Retry() {
+        UpdateItem testEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        String payload = JsonMapper.writeToJson(testEvent);
+
+        doThrow(new RetryableMessagingException("Retry event.")).when(serviceMock).updateItem(testEvent);
+
+        assertThrows(RetryableMessagingException.class, () -> consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC, 0, TIMESTAMP, consumerMock));
+
+        verify(retryPublisherMock, never()).scheduleRetry(any(), any(), any(), anyLong(), any());
+    }
+
+    /**
+     * With consolidated retry enabled a retryable failure is published to the shared retry topic instead, with the key and
+     * timestamp of the record that failed.
+     */
+    @Test
+    public void testListen_ConsolidatedRetry() {
+        UpdateItem testEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        String payload = JsonMapper.writeToJson(testEvent);
+
+        when(retryPublisherMock.isEnabled()).thenReturn(true);
+        doThrow(new RetryableMessagingException("Retry event.")).when(serviceMock).updateItem(testEvent);
+
+        consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC, 0, TIMESTAMP, consumerMock);
+
+        verify(retryPublisherMock, times(1)).scheduleRetry(eq(UPDATE_ITEM_TOPIC), eq(KEY), eq(payload), eq(TIMESTAMP), isNull());
+    }
+
+    /**
+     * With the hot item lane enabled, the events of a hot item are moved to the lane rather than processed.
+     */
+    @Test
+    public void testListen_HotKeyLane() {
+        UpdateItem testEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        String payload = JsonMapper.writeToJson(testEvent);
+
+        when(hotKeyLaneMock.isEnabled()).thenReturn(true);
+        when(hotKeyTrackerMock.record(UPDATE_ITEM_TOPIC, 0, testEvent.getId())).thenReturn(true);
+        when(hotKeyLaneMock.shouldRoute(testEvent.getId(), true, consumerMock)).thenReturn(true);
+
+        consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC, 0, TIMESTAMP, consumerMock);
+
+        verify(hotKeyLaneMock, times(1)).route(testEvent.getId(), payload);
+        verify(serviceMock, never()).updateItem(any());
+    }
+
+    /**
+     * An item that has cooled stays on the lane while its earlier events may still be queued there.
+     */
+    @Test
+    public void testListen_HotKeyLaneNotDrained() {
+        UpdateItem testEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        String payload = JsonMapper.writeToJson(testEvent);
+
+        when(hotKeyLaneMock.isEnabled()).thenReturn(true);
+        when(hotKeyLaneMock.shouldRoute(testEvent.getId(), false, consumerMock)).thenReturn(true);
+
+        consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC, 0, TIMESTAMP, consumerMock);
+
+        verify(hotKeyLaneMock, times(1)).route(testEvent.getId(), payload);
+        verify(serviceMock, never()).updateItem(any());
+    }
+
+    /**
+     * Hot items on the retry topics are not moved, as they are already off the main topic.
+     */
+    @Test
+    public void testListen_HotKeyOnRetryTopic() {
+        UpdateItem testEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        String payload = JsonMapper.writeToJson(testEvent);
+
+        when(hotKeyLaneMock.isEnabled()).thenReturn(true);
+        when(hotKeyTrackerMock.record(any(), eq(0), eq(testEvent.getId()))).thenReturn(true);
+
+        consumer.listen(payload, KEY, UPDATE_ITEM_TOPIC + "-retry-0", 0, TIMESTAMP, consumerMock);
 
+        verify(hotKeyLaneMock, never()).route(any(), any());
         verify(serviceMock, times(1)).updateItem(testEvent);
     }
 }
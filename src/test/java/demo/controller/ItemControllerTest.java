@@ -5,6 +5,8 @@ import java.util.UUID;
 
 import demo.domain.Item;
 import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import demo.state.ItemStateStore;
 import demo.util.TestEntityData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,18 +16,23 @@ import org.springframework.http.ResponseEntity;
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ItemControllerTest {
 
     private ItemRepository itemRepositoryMock;
+    private ItemStateStore itemStateStoreMock;
     private ItemController controller;
 
     @BeforeEach
     public void setUp() {
         itemRepositoryMock = mock(ItemRepository.class);
-        controller = new ItemController(itemRepositoryMock);
+        itemStateStoreMock = mock(ItemStateStore.class);
+        controller = new ItemController(itemRepositoryMock, itemStateStoreMock);
     }
 
     /**
@@ -59,4 +66,29 @@ public class ItemControllerTest {
         ResponseEntity response = controller.getItemStatus(itemId);
         assertThat(response.getStatusCode(), equalTo(HttpStatus.INTERNAL_SERVER_ERROR));
     }
+
+    /**
+     * Ensure that misses are answered from the state store when it owns the item, and hits from the database, as the
+     * cached status may be stale.
+     */
+    @Test
+    public void testGetItem_FromStateStore() {
+        UUID itemId = randomUUID();
+        UUID missingItemId = randomUUID();
+        Item item = TestEntityData.buildItem(itemId, "my-item");
+        item.setStatus(ItemStatus.CANCELLED);
+        when(itemStateStoreMock.isAuthoritativeFor(any())).thenReturn(true);
+        when(itemStateStoreMock.getStatus(itemId)).thenReturn(Optional.of(ItemStatus.ACTIVE));
+        when(itemStateStoreMock.getStatus(missingItemId)).thenReturn(Optional.empty());
+        when(itemRepositoryMock.findById(itemId)).thenReturn(Optional.of(item));
+
+        ResponseEntity response = controller.getItemStatus(itemId);
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody(), equalTo("CANCELLED"));
+
+        response = controller.getItemStatus(missingItemId);
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+
+        verify(itemRepositoryMock, never()).findById(missingItemId);
+    }
 }
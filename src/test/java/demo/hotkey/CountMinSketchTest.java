@@ -0,0 +1,45 @@
+package demo.hotkey;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class CountMinSketchTest {
+
+    /**
+     * Estimates never under-count, and with ample width barely over-count.
+     */
+    @Test
+    public void testEstimate() {
+        final CountMinSketch sketch = new CountMinSketch(4096, 4);
+        final UUID item = randomUUID();
+        for (int i=0; i<100; i++) {
+            sketch.add(item);
+        }
+        for (int i=0; i<10000; i++) {
+            sketch.add(randomUUID());
+        }
+
+        assertThat(sketch.estimate(item), greaterThanOrEqualTo(100L));
+        assertThat(sketch.estimate(item), lessThanOrEqualTo(110L));
+    }
+
+    @Test
+    public void testDecay() {
+        final CountMinSketch sketch = new CountMinSketch(64, 2);
+        final UUID item = randomUUID();
+        for (int i=0; i<10; i++) {
+            sketch.add(item);
+        }
+
+        sketch.decay();
+
+        assertThat(sketch.estimate(item), equalTo(5L));
+    }
+}
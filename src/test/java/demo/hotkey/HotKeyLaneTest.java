@@ -0,0 +1,114 @@
+package demo.hotkey;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import demo.tracing.SpanExporter;
+import demo.tracing.Tracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HotKeyLaneTest {
+
+    private static final String HOT_TOPIC = "update-item-hot";
+    private static final TopicPartition LANE_PARTITION = new TopicPartition(HOT_TOPIC, 1);
+    private static final long OFFSET_REFRESH_MILLISECONDS = 60000;
+
+    private KafkaTemplate<String, String> kafkaTemplateMock;
+    private Consumer<?, ?> consumerMock;
+    private HotKeyLane lane;
+
+    @BeforeEach
+    public void setUp() {
+        kafkaTemplateMock = mockKafkaTemplate();
+        consumerMock = mock(Consumer.class);
+        RecordMetadata metadata = new RecordMetadata(LANE_PARTITION, 5, 0, 0, 0, 0);
+        when(kafkaTemplateMock.send(ArgumentMatchers.<ProducerRecord<String, String>>any()))
+                .thenReturn(CompletableFuture.completedFuture(new SendResult<>(null, metadata)));
+        lane = lane(OFFSET_REFRESH_MILLISECONDS);
+    }
+
+    /**
+     * A hot item is routed, without reading the lane's offsets.
+     */
+    @Test
+    public void testShouldRoute_Hot() {
+        assertThat(lane.shouldRoute(randomUUID(), true, consumerMock), equalTo(true));
+
+        verify(consumerMock, never()).committed(anySet());
+    }
+
+    /**
+     * An item never routed is not routed once cool.
+     */
+    @Test
+    public void testShouldRoute_NeverRouted() {
+        assertThat(lane.shouldRoute(randomUUID(), false, consumerMock), equalTo(false));
+    }
+
+    /**
+     * A cooled item stays on the lane until the lane has committed past its last routed event.
+     */
+    @Test
+    public void testShouldRoute_UntilDrained() {
+        lane = lane(0);
+        UUID itemId = randomUUID();
+        lane.route(itemId, "payload");
+
+        when(consumerMock.committed(Set.of(LANE_PARTITION))).thenReturn(Map.of(LANE_PARTITION, new OffsetAndMetadata(5)));
+        assertThat(lane.shouldRoute(itemId, false, consumerMock), equalTo(true));
+
+        when(consumerMock.committed(Set.of(LANE_PARTITION))).thenReturn(Map.of(LANE_PARTITION, new OffsetAndMetadata(6)));
+        assertThat(lane.shouldRoute(itemId, false, consumerMock), equalTo(false));
+    }
+
+    /**
+     * The lane's offsets are read once per refresh interval, rather than for each event of a cooled item.
+     */
+    @Test
+    public void testShouldRoute_CachesCommittedOffsets() {
+        UUID itemId = randomUUID();
+        UUID otherItemId = randomUUID();
+        lane.route(itemId, "payload");
+        lane.route(otherItemId, "payload");
+        when(consumerMock.committed(Set.of(LANE_PARTITION))).thenReturn(Map.of(LANE_PARTITION, new OffsetAndMetadata(5)));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(lane.shouldRoute(itemId, false, consumerMock), equalTo(true));
+            assertThat(lane.shouldRoute(otherItemId, false, consumerMock), equalTo(true));
+        }
+
+        verify(consumerMock, times(1)).committed(anySet());
+    }
+
+    private HotKeyLane lane(final long offsetRefreshMilliseconds) {
+        return new HotKeyLane(kafkaTemplateMock, new Tracer(mock(SpanExporter.class), 0), new SimpleMeterRegistry(), true,
+                HOT_TOPIC, offsetRefreshMilliseconds);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaTemplate<String, String> mockKafkaTemplate() {
+        return mock(KafkaTemplate.class);
+    }
+}
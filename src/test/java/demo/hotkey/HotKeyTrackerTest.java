@@ -0,0 +1,90 @@
+package demo.hotkey;
+
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HotKeyTrackerTest {
+
+    private static final String TOPIC = "update-item";
+
+    private SimpleMeterRegistry meterRegistry;
+    private HotKeyTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new HotKeyTracker(meterRegistry, 3, 1024, 4, 60000, 50);
+    }
+
+    /**
+     * An item becomes hot once its events reach the threshold, and heads the top keys amongst many cold items.
+     */
+    @Test
+    public void testRecord_HotItem() {
+        // Wide enough that the cold items do not overestimate the hot item's count.
+        tracker = new HotKeyTracker(meterRegistry, 3, 1 << 16, 4, 60000, 50);
+        final UUID hotItem = randomUUID();
+        for (int i=0; i<1000; i++) {
+            tracker.record(TOPIC, i % 4, randomUUID());
+        }
+        for (int i=0; i<49; i++) {
+            assertThat(tracker.record(TOPIC, 0, hotItem), equalTo(false));
+        }
+
+        assertThat(tracker.record(TOPIC, 0, hotItem), equalTo(true));
+
+        final TopicLoad load = tracker.getLoad().get(TOPIC);
+        assertThat(load.getTopKeys().get(0).getKey(), equalTo(hotItem.toString()));
+        assertThat(load.getTopKeys().size(), equalTo(3));
+        assertThat(meterRegistry.find(HotKeyTracker.TOP_KEY_METRIC).tag("topic", TOPIC).gauge().value() >= 50, equalTo(true));
+    }
+
+    /**
+     * The partition skew is the busiest partition's events over the mean.
+     */
+    @Test
+    public void testGetLoad_PartitionSkew() {
+        for (int i=0; i<300; i++) {
+            tracker.record(TOPIC, 0, randomUUID());
+        }
+        for (int i=0; i<100; i++) {
+            tracker.record(TOPIC, 1, randomUUID());
+            tracker.record(TOPIC, 2, randomUUID());
+        }
+
+        final TopicLoad load = tracker.getLoad().get(TOPIC);
+        assertThat(load.getPartitionEvents().get(0), equalTo(300L));
+        assertThat(load.getPartitionSkew(), equalTo(1.8));
+        assertThat(meterRegistry.find(HotKeyTracker.SKEW_METRIC).tag("topic", TOPIC).gauge().value(), equalTo(1.8));
+    }
+
+    /**
+     * Counts age, so an item stops being hot once its burst is over.
+     */
+    @Test
+    public void testRecord_Decay() throws Exception {
+        tracker = new HotKeyTracker(meterRegistry, 3, 1024, 4, 50, 10);
+        final UUID item = randomUUID();
+        for (int i=0; i<10; i++) {
+            tracker.record(TOPIC, 0, item);
+        }
+        Thread.sleep(60);
+        tracker.record(TOPIC, 0, randomUUID());
+        Thread.sleep(60);
+
+        assertThat(tracker.record(TOPIC, 0, item), equalTo(false));
+    }
+
+    @Test
+    public void testRecord_NoItemId() {
+        assertThat(tracker.record(TOPIC, 0, null), equalTo(false));
+        assertThat(tracker.getLoad().isEmpty(), equalTo(true));
+    }
+}
@@ -0,0 +1,50 @@
+package demo.hotkey;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SpaceSavingTest {
+
+    /**
+     * A newcomer only takes over the smallest counter if its estimate beats it, inheriting that count as its error.
+     */
+    @Test
+    public void testOffer_Full() {
+        final SpaceSaving<String> topKeys = new SpaceSaving<>(2);
+        topKeys.offer("a", 1);
+        topKeys.offer("a", 2);
+        topKeys.offer("a", 3);
+        topKeys.offer("b", 1);
+        topKeys.offer("b", 2);
+
+        topKeys.offer("c", 1);
+        assertThat(keys(topKeys.top(2)), equalTo(List.of("a", "b")));
+
+        topKeys.offer("c", 3);
+        final List<HeavyHitter> top = topKeys.top(2);
+        assertThat(keys(top), equalTo(List.of("a", "c")));
+        assertThat(top.get(1).getCount(), equalTo(3L));
+        assertThat(top.get(1).getError(), equalTo(2L));
+    }
+
+    @Test
+    public void testDecay() {
+        final SpaceSaving<String> topKeys = new SpaceSaving<>(2);
+        topKeys.offer("a", 1);
+        topKeys.offer("a", 2);
+        topKeys.offer("b", 1);
+
+        topKeys.decay();
+
+        assertThat(keys(topKeys.top(2)), equalTo(List.of("a")));
+        assertThat(topKeys.top(2).get(0).getCount(), equalTo(1L));
+    }
+
+    private static List<String> keys(final List<HeavyHitter> hitters) {
+        return hitters.stream().map(HeavyHitter::getKey).toList();
+    }
+}
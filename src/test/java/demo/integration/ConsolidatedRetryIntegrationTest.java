@@ -0,0 +1,112 @@
+package demo.integration;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.DemoConfiguration;
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import demo.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@Slf4j
+@SpringBootTest(classes = { DemoConfiguration.class }, properties = { "demo.retry.consolidated.enabled=true" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-dlt", "retry" })
+public class ConsolidatedRetryIntegrationTest {
+
+    final static String CREATE_ITEM_TOPIC = "create-item";
+    final static String UPDATE_ITEM_TOPIC = "update-item";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @BeforeEach
+    public void setUp() {
+        itemRepository.deleteAll();
+
+        // Wait until the partitions are assigned.
+        registry.getListenerContainers().stream().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
+    }
+
+    /**
+     * Only the main, dead letter and shared retry topics are consumed, rather than a topic per retry attempt.
+     */
+    @Test
+    public void testNoPerAttemptRetryTopics() {
+        assertThat(registry.getListenerContainers().stream()
+                .flatMap(container -> container.getContainerProperties().getTopics() == null ? null : Set.of(container.getContainerProperties().getTopics()).stream())
+                .anyMatch(topic -> topic.startsWith(UPDATE_ITEM_TOPIC + "-retry")), equalTo(false));
+    }
+
+    /**
+     * Test where the update item events are received first, and do not find matching items in the database.
+     *
+     * The update item events are sent to the shared retry topic, and are re-dispatched to the update item consumer once
+     * due, by which time the items have been created.
+     */
+    @Test
+    public void testUpdateBeforeCreate() throws Exception {
+        int totalMessages = 10;
+        Set<UUID> itemIds = new HashSet<>();
+
+        // Update the items.
+        for (int i=0; i<totalMessages; i++) {
+            UUID itemId = randomUUID();
+            UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+            kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(updateEvent));
+            itemIds.add(itemId);
+        }
+
+        // Pause a few seconds before sending in the create item events to ensure the update events are sent to the retry topic.
+        TimeUnit.SECONDS.sleep(3);
+
+        // Assert that no items have been created by the update item event.
+        assertThat(itemRepository.findAll().size(), equalTo(0));
+
+        // Create the new items.
+        itemIds.forEach((itemId) -> {
+            CreateItem createEvent = TestEventData.buildCreateItemEvent(itemId, RandomStringUtils.randomAlphabetic(8));
+            kafkaClient.sendMessage(CREATE_ITEM_TOPIC, JsonMapper.writeToJson(createEvent));
+        });
+
+        // Check all messages added to database.
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemRepository.findAll().size() == totalMessages);
+        // Check all messages have ACTIVE status.
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemRepository.findAll().stream().allMatch((item) -> item.getStatus().equals(ItemStatus.ACTIVE)));
+    }
+}
@@ -0,0 +1,293 @@
+package demo.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import demo.DemoConfiguration;
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.integration.FaultInjector.Fault;
+import demo.integration.FaultInjector.Target;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import demo.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Drives a high volume of events through the retry topics while the database is degraded, and measures the throughput,
+ * the retry amplification (deliveries per update event), the events dead lettered and the time to recover.
+ *
+ * Faults are only injected once the items are created, as a create failing against the database is dropped rather than
+ * retried.  The retry duration is extended beyond the test default, so that events are only dead lettered once their
+ * attempts are exhausted, rather than once the lag the faults cause has used up their retry duration.  The time limits
+ * are derived from a baseline of the same updates applied without faults, measured in the same test, rather than fixed,
+ * so that they hold on a slower machine.
+ */
+@Slf4j
+@SpringBootTest(classes = { DemoConfiguration.class }, properties = { "demo.faultInjection.enabled=true",
+        "demo.retry.maxRetryDurationMilliseconds=60000" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-retry-0", "update-item-retry-1",
+        "update-item-retry-2", "update-item-dlt" })
+public class FaultInjectionIntegrationTest {
+
+    final static String CREATE_ITEM_TOPIC = "create-item";
+    final static String UPDATE_ITEM_TOPIC = "update-item";
+    final static String DLT_TOPIC = "update-item-dlt";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private FaultInjector faultInjector;
+
+    @Value("${demo.retry.maxRetryAttempts}")
+    private int maxRetryAttempts;
+
+    @Value("${demo.retry.retryIntervalMilliseconds}")
+    private long retryIntervalMilliseconds;
+
+    @Value("${demo.retry.retryBackoffMultiplier}")
+    private double retryBackoffMultiplier;
+
+    private Consumer<String, String> offsetConsumer;
+
+    @BeforeEach
+    public void setUp() {
+        faultInjector.clear();
+        itemRepository.deleteAll();
+
+        // Wait until the partitions are assigned.
+        registry.getListenerContainers().stream().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
+
+        offsetConsumer = new DefaultKafkaConsumerFactory<>(KafkaTestUtils.consumerProps("fault-injection", "false", embeddedKafkaBroker),
+                new StringDeserializer(), new StringDeserializer()).createConsumer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        faultInjector.clear();
+        offsetConsumer.close();
+    }
+
+    /**
+     * With every query slowed, the updates are applied at a lower rate but without any retries.  The rate is at least half
+     * that of the baseline with each query's latency added in turn.
+     */
+    @Test
+    public void testDatabaseLatency() {
+        final int totalMessages = 500;
+        final long latencyMilliseconds = 5;
+        final List<UUID> itemIds = createItems(totalMessages * 2);
+        final long baseline = applyUpdates(itemIds.subList(0, totalMessages));
+        final List<UUID> faultedItemIds = itemIds.subList(totalMessages, totalMessages * 2);
+        final Counts before = counts();
+        final long callsBefore = faultInjector.getCalls();
+
+        faultInjector.inject(Fault.builder().target(Target.REPOSITORY).latencyMilliseconds(latencyMilliseconds).build());
+        final long elapsed = applyUpdates(faultedItemIds);
+
+        final Counts after = counts();
+        final long calls = faultInjector.getCalls() - callsBefore;
+        final double throughput = totalMessages * 1000.0 / elapsed;
+        final double minThroughput = totalMessages * 1000.0 / (baseline + calls * latencyMilliseconds) / 2;
+        log.info("Database latency: {} updates in {} ms ({} per second, baseline {} ms), amplification {}, dead lettered {}", totalMessages, elapsed,
+                String.format("%.1f", throughput), baseline, amplification(totalMessages, before, after), after.deadLettered - before.deadLettered);
+
+        assertThat(calls, greaterThanOrEqualTo((long) totalMessages));
+        assertThat(throughput, greaterThan(minThroughput));
+        assertThat(after.retried - before.retried, equalTo(0L));
+        assertThat(after.deadLettered - before.deadLettered, equalTo(0L));
+        assertThat(activeItems(faultedItemIds), equalTo((long) totalMessages));
+    }
+
+    /**
+     * With a share of queries timing out or failing, the failed updates are retried, so each event is delivered more
+     * than once on average, and only those failing on every attempt are dead lettered.  No update is lost.
+     */
+    @Test
+    public void testIntermittentTimeoutsAndFailures() {
+        final int totalMessages = 500;
+        final List<UUID> itemIds = createItems(totalMessages);
+        final Counts before = counts();
+
+        faultInjector.inject(Fault.builder().target(Target.REPOSITORY).timeoutRate(0.1).timeoutMilliseconds(50).failureRate(0.1).build());
+        final long started = System.currentTimeMillis();
+        sendUpdates(itemIds);
+        awaitOutcome(itemIds, before);
+        final long elapsed = System.currentTimeMillis() - started;
+
+        final Counts after = counts();
+        final double amplification = amplification(totalMessages, before, after);
+        final long deadLettered = after.deadLettered - before.deadLettered;
+        log.info("Intermittent faults: {} updates in {} ms, {} timeouts and {} failures injected, amplification {}, dead lettered {}",
+                totalMessages, elapsed, faultInjector.getTimeouts(), faultInjector.getFailures(), String.format("%.2f", amplification), deadLettered);
+
+        assertThat(amplification, greaterThan(1.0));
+        assertThat(amplification, lessThan((double) maxRetryAttempts));
+        assertThat(deadLettered, lessThanOrEqualTo(totalMessages / 20L));
+        assertThat(activeItems(itemIds) + deadLettered, equalTo((long) totalMessages));
+    }
+
+    /**
+     * With no connections available for a period shorter than the retry schedule, the updates consumed during the outage
+     * are retried, and all are applied within the retry schedule, plus twice the baseline time to apply them, of the
+     * database recovering.
+     */
+    @Test
+    public void testOutageRecovery() throws Exception {
+        final int totalMessages = 200;
+        final List<UUID> itemIds = createItems(totalMessages * 2);
+        final long baseline = applyUpdates(itemIds.subList(0, totalMessages));
+        final List<UUID> faultedItemIds = itemIds.subList(totalMessages, totalMessages * 2);
+        final Counts before = counts();
+
+        faultInjector.inject(Fault.builder().target(Target.CONNECTION).timeoutRate(1.0).timeoutMilliseconds(10).build());
+        sendUpdates(faultedItemIds);
+        TimeUnit.SECONDS.sleep(3);
+        faultInjector.clear();
+        final long recovered = System.currentTimeMillis();
+        awaitOutcome(faultedItemIds, before);
+        final long recoveryTime = System.currentTimeMillis() - recovered;
+
+        final Counts after = counts();
+        final double amplification = amplification(totalMessages, before, after);
+        log.info("Database outage: {} updates recovered {} ms after the outage (baseline {} ms), amplification {}, dead lettered {}",
+                totalMessages, recoveryTime, baseline, String.format("%.2f", amplification), after.deadLettered - before.deadLettered);
+
+        assertThat(recoveryTime, lessThan(retrySchedule() + baseline * 2));
+        assertThat(amplification, greaterThan(1.0));
+        assertThat(after.deadLettered - before.deadLettered, equalTo(0L));
+        assertThat(activeItems(faultedItemIds), equalTo((long) totalMessages));
+    }
+
+    private List<UUID> createItems(final int totalMessages) {
+        final List<UUID> itemIds = new ArrayList<>();
+        for (int i=0; i<totalMessages; i++) {
+            UUID itemId = randomUUID();
+            CreateItem createEvent = TestEventData.buildCreateItemEvent(itemId, RandomStringUtils.randomAlphabetic(8));
+            kafkaClient.sendMessage(CREATE_ITEM_TOPIC, JsonMapper.writeToJson(createEvent));
+            itemIds.add(itemId);
+        }
+        Awaitility.await().atMost(60, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemRepository.count() == totalMessages);
+        return itemIds;
+    }
+
+    private void sendUpdates(final List<UUID> itemIds) {
+        itemIds.forEach((itemId) -> {
+            UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+            kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(updateEvent));
+        });
+    }
+
+    /**
+     * Send the updates and wait for their outcome.
+     *
+     * @return the time taken in milliseconds
+     */
+    private long applyUpdates(final List<UUID> itemIds) {
+        final Counts before = counts();
+        final long started = System.currentTimeMillis();
+        sendUpdates(itemIds);
+        awaitOutcome(itemIds, before);
+        return System.currentTimeMillis() - started;
+    }
+
+    /**
+     * Wait until every update has either been applied or dead lettered.
+     */
+    private void awaitOutcome(final List<UUID> itemIds, final Counts before) {
+        Awaitility.await().atMost(60, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS).pollInterval(250, TimeUnit.MILLISECONDS)
+            .until(() -> activeItems(itemIds) + counts().deadLettered - before.deadLettered >= itemIds.size());
+    }
+
+    private long activeItems(final List<UUID> itemIds) {
+        return faultInjector.unfaulted(() -> itemRepository.findAllById(itemIds)).stream()
+                .filter(item -> item.getStatus() == ItemStatus.ACTIVE)
+                .count();
+    }
+
+    /**
+     * The total backoff across all the retry attempts.
+     */
+    private long retrySchedule() {
+        double schedule = 0;
+        double backoff = retryIntervalMilliseconds;
+        for (int i=1; i<maxRetryAttempts; i++) {
+            schedule += backoff;
+            backoff *= retryBackoffMultiplier;
+        }
+        return (long) schedule;
+    }
+
+    private static double amplification(final int totalMessages, final Counts before, final Counts after) {
+        return (totalMessages + after.retried - before.retried) / (double) totalMessages;
+    }
+
+    /**
+     * The records on the retry topics and the dead letter topic.
+     */
+    private Counts counts() {
+        final Counts counts = new Counts();
+        for (int i=0; i<maxRetryAttempts-1; i++) {
+            counts.retried += records(UPDATE_ITEM_TOPIC + "-retry-" + i);
+        }
+        counts.deadLettered = records(DLT_TOPIC);
+        return counts;
+    }
+
+    private long records(final String topic) {
+        final List<TopicPartition> partitions = offsetConsumer.partitionsFor(topic).stream()
+                .map(partition -> new TopicPartition(topic, partition.partition()))
+                .collect(Collectors.toList());
+        return offsetConsumer.endOffsets(partitions).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static class Counts {
+        long retried;
+        long deadLettered;
+    }
+}
@@ -0,0 +1,165 @@
+package demo.integration;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+
+import demo.repository.ItemRepository;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Injects latency, timeouts and failures into the item repository or the data source's connections, to simulate a
+ * degraded database.
+ *
+ * Repository faults surface as a query timeout or a lost connection would, once translated by Spring.  Connection
+ * faults surface as the connection pool does when the database is unreachable, with timeouts waiting before failing as
+ * for the pool's connection timeout.  The timeouts and failures are drawn from a random sequence seeded by the fault, so
+ * the same share is injected on every run.  Calls made via {@link #unfaulted(Supplier)}, such as a test's assertions, are
+ * left alone.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "demo.faultInjection.enabled", havingValue = "true")
+public class FaultInjector implements BeanPostProcessor {
+
+    public enum Target { REPOSITORY, CONNECTION }
+
+    @Builder
+    @Value
+    public static class Fault {
+        @Builder.Default
+        Target target = Target.REPOSITORY;
+        long latencyMilliseconds;
+        double timeoutRate;
+        long timeoutMilliseconds;
+        double failureRate;
+        @Builder.Default
+        long seed = 1;
+    }
+
+    private static final Fault NONE = Fault.builder().build();
+
+    private final ThreadLocal<Boolean> bypass = ThreadLocal.withInitial(() -> false);
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile Fault fault = NONE;
+    private volatile Random random = new Random(NONE.getSeed());
+
+    public void inject(final Fault fault) {
+        log.info("Injecting database fault: {}", fault);
+        this.random = new Random(fault.getSeed());
+        this.fault = fault;
+    }
+
+    public void clear() {
+        log.info("Clearing database fault");
+        this.fault = NONE;
+    }
+
+    public <T> T unfaulted(final Supplier<T> call) {
+        bypass.set(true);
+        try {
+            return call.get();
+        } finally {
+            bypass.set(false);
+        }
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (bean instanceof ItemRepository repository) {
+            return Proxy.newProxyInstance(ItemRepository.class.getClassLoader(), new Class<?>[] { ItemRepository.class }, (proxy, method, args) -> {
+                apply(Target.REPOSITORY);
+                try {
+                    return method.invoke(repository, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+        if (bean instanceof DataSource dataSource) {
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    applyToConnection();
+                    return super.getConnection();
+                }
+
+                @Override
+                public Connection getConnection(final String username, final String password) throws SQLException {
+                    applyToConnection();
+                    return super.getConnection(username, password);
+                }
+            };
+        }
+        return bean;
+    }
+
+    private void applyToConnection() throws SQLException {
+        try {
+            apply(Target.CONNECTION);
+        } catch (QueryTimeoutException | DataAccessResourceFailureException e) {
+            throw new SQLTransientConnectionException(e.getMessage(), e);
+        }
+    }
+
+    private void apply(final Target target) {
+        final Fault current = fault;
+        if (current.getTarget() != target || bypass.get()) {
+            return;
+        }
+        calls.incrementAndGet();
+        sleep(current.getLatencyMilliseconds());
+        final double roll = random.nextDouble();
+        if (roll < current.getTimeoutRate()) {
+            timeouts.incrementAndGet();
+            sleep(current.getTimeoutMilliseconds());
+            throw new QueryTimeoutException("Injected " + target + " timeout after " + current.getTimeoutMilliseconds() + " ms");
+        }
+        if (roll < current.getTimeoutRate() + current.getFailureRate()) {
+            failures.incrementAndGet();
+            throw new DataAccessResourceFailureException("Injected " + target + " failure");
+        }
+    }
+
+    private static void sleep(final long milliseconds) {
+        if (milliseconds <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(milliseconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
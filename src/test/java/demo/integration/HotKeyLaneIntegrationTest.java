@@ -0,0 +1,108 @@
+package demo.integration;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.DemoConfiguration;
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import demo.util.TestEventData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = { DemoConfiguration.class },
+        properties = { "demo.hotkey.lane.enabled=true", "demo.hotkey.hotThreshold=3" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-hot", "update-item-retry-0", "update-item-retry-1", "update-item-retry-2", "update-item-dlt" })
+public class HotKeyLaneIntegrationTest {
+
+    final static String CREATE_ITEM_TOPIC = "create-item";
+    final static String UPDATE_ITEM_TOPIC = "update-item";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        itemRepository.deleteAll();
+
+        // Wait until the partitions are assigned.
+        registry.getListenerContainers().stream().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
+    }
+
+    /**
+     * A burst of update events for one item makes it hot, so its later events are moved to the hot item lane, where
+     * they are applied, and the item is reported as the heaviest on the update item topic.
+     */
+    @Test
+    public void testHotItemMovedToLane() {
+        UUID itemId = randomUUID();
+        CreateItem createEvent = TestEventData.buildCreateItemEvent(itemId, "hot-item");
+        kafkaClient.sendMessage(CREATE_ITEM_TOPIC, JsonMapper.writeToJson(createEvent));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+                .until(() -> itemRepository.findById(itemId).isPresent());
+
+        for (int i=0; i<10; i++) {
+            UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+            kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(updateEvent));
+        }
+
+        // The item is hot from its third event.
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+                .until(() -> laneEventsProcessed() == 8);
+        assertThat(meterRegistry.get("demo.hotkey.lane.routed").counter().count(), equalTo(8.0));
+        assertThat(itemRepository.findById(itemId).get().getStatus(), equalTo(ItemStatus.ACTIVE));
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/hotkeys", String.class);
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody(), containsString(itemId.toString()));
+    }
+
+    private long laneEventsProcessed() {
+        return meterRegistry.find("spring.kafka.listener").timers().stream()
+                .filter(timer -> timer.getId().getTag("name").startsWith("hot-key-lane"))
+                .mapToLong(Timer::count)
+                .sum();
+    }
+}
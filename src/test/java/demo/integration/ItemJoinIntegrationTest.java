@@ -0,0 +1,144 @@
+package demo.integration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.DemoConfiguration;
+import demo.event.CreateItem;
+import demo.event.UpdateItem;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import demo.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@Slf4j
+@SpringBootTest(classes = { DemoConfiguration.class },
+        properties = { "demo.join.enabled=true", "demo.retry.consolidated.enabled=true", "demo.join.reorderWindowMilliseconds=2000" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-dlt", "retry" })
+public class ItemJoinIntegrationTest {
+
+    final static String CREATE_ITEM_TOPIC = "create-item";
+    final static String UPDATE_ITEM_TOPIC = "update-item";
+    final static String RETRY_TOPIC = "retry";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @BeforeEach
+    public void setUp() {
+        itemRepository.deleteAll();
+
+        // Wait until the partitions are assigned, the separate create and update item listeners not being started.
+        registry.getListenerContainers().stream().filter(container -> container.isAutoStartup()).forEach(container ->
+                ContainerTestUtils.waitForAssignment(container,
+                        embeddedKafkaBroker.getPartitionsPerTopic() * container.getContainerProperties().getTopics().length));
+    }
+
+    /**
+     * Test where the update item events are received before their create item events, either because the creates were
+     * produced earlier but are consumed later, or because they were produced later but within the reorder window.
+     *
+     * The updates are applied after their creates, without any going to the retry topic.
+     */
+    @Test
+    public void testUpdateBeforeCreate() throws Exception {
+        int totalMessages = 10;
+        Set<UUID> itemIds = new HashSet<>();
+
+        long createdTimestamp = System.currentTimeMillis() - 1000;
+        for (int i=0; i<totalMessages; i++) {
+            UUID itemId = randomUUID();
+            UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+            kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, itemId.toString(), null, JsonMapper.writeToJson(updateEvent));
+            itemIds.add(itemId);
+        }
+
+        // Within the reorder window.
+        TimeUnit.MILLISECONDS.sleep(500);
+
+        // Half created with a timestamp before the updates, half after.
+        int sent = 0;
+        for (UUID itemId : itemIds) {
+            CreateItem createEvent = TestEventData.buildCreateItemEvent(itemId, RandomStringUtils.randomAlphabetic(8));
+            kafkaClient.sendMessage(CREATE_ITEM_TOPIC, itemId.toString(), sent++ % 2 == 0 ? createdTimestamp : null, JsonMapper.writeToJson(createEvent));
+        }
+
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemRepository.findAll().size() == totalMessages
+                    && itemRepository.findAll().stream().allMatch((item) -> item.getStatus().equals(ItemStatus.ACTIVE)));
+        assertThat(retryTopicEvents().stream().anyMatch(event -> itemIds.stream().anyMatch(itemId -> event.contains(itemId.toString()))), equalTo(false));
+    }
+
+    /**
+     * An update whose item is not created within the reorder window is a genuine failure, so is retried.
+     */
+    @Test
+    public void testUpdateWithoutCreate() {
+        UUID itemId = randomUUID();
+        UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+        kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, itemId.toString(), null, JsonMapper.writeToJson(updateEvent));
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> retryTopicEvents().stream().anyMatch(event -> event.contains(itemId.toString())));
+    }
+
+    /**
+     * The events on the retry topic, whether retried or dead lettered since.
+     */
+    private List<String> retryTopicEvents() {
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<String, String>(
+                KafkaTestUtils.consumerProps("retry-check", "false", embeddedKafkaBroker),
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            final List<TopicPartition> partitions = consumer.partitionsFor(RETRY_TOPIC).stream()
+                    .map(partition -> new TopicPartition(RETRY_TOPIC, partition.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            final Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            final List<String> events = new ArrayList<>();
+            while (partitions.stream().anyMatch(partition -> consumer.position(partition) < endOffsets.get(partition))) {
+                consumer.poll(Duration.ofMillis(100)).forEach(record -> events.add(record.value()));
+            }
+            return events;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package demo.integration;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.DemoConfiguration;
+import demo.event.CreateItem;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.service.ItemStatus;
+import demo.state.ItemStateStore;
+import demo.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * With the item state store enabled, this instance owns every create-item partition, so the store is authoritative for
+ * every item.  The creates are keyed by item id, as the store requires.  Another instance, consuming an update or retry partition, is simulated by updating the database directly.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = { DemoConfiguration.class },
+        properties = { "demo.state.enabled=true" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-retry-0", "update-item-retry-1",
+        "update-item-retry-2", "update-item-dlt" })
+public class ItemStateStoreIntegrationTest {
+
+    final static String CREATE_ITEM_TOPIC = "create-item";
+    final static String UPDATE_ITEM_TOPIC = "update-item";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemStateStore itemStateStore;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        itemRepository.deleteAll();
+
+        // Wait until the partitions are assigned.
+        registry.getListenerContainers().stream().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
+    }
+
+    /**
+     * Items created and updated on this instance are answered from the store.
+     */
+    @Test
+    public void testCreateAndUpdateItem() {
+        final UUID itemId = createItem();
+
+        kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE)));
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemStateStore.getStatus(itemId).equals(Optional.of(ItemStatus.ACTIVE)));
+        assertThat(itemRepository.findById(itemId).get().getStatus(), equalTo(ItemStatus.ACTIVE));
+        assertThat(status(itemId).getBody(), equalTo("ACTIVE"));
+    }
+
+    /**
+     * An item cancelled by another instance is left cancelled by a later update to ACTIVE, although the store still has
+     * it as NEW, and the status endpoint does not return the stale status.
+     */
+    @Test
+    public void testStaleEntryIsNotTrusted() {
+        final UUID itemId = createItem();
+        assertThat(itemStateStore.isAuthoritativeFor(itemId), equalTo(true));
+
+        itemRepository.updateStatus(itemId, ItemStatus.CANCELLED);
+        assertThat(itemStateStore.getStatus(itemId).get(), equalTo(ItemStatus.NEW));
+        assertThat(status(itemId).getBody(), equalTo("CANCELLED"));
+
+        kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE)));
+
+        // The failed conditional write refreshes the entry from the database.
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemStateStore.getStatus(itemId).equals(Optional.of(ItemStatus.CANCELLED)));
+        assertThat(itemRepository.findById(itemId).get().getStatus(), equalTo(ItemStatus.CANCELLED));
+        assertThat(status(itemId).getBody(), equalTo("CANCELLED"));
+    }
+
+    private UUID createItem() {
+        final UUID itemId = randomUUID();
+        final CreateItem createEvent = TestEventData.buildCreateItemEvent(itemId, RandomStringUtils.randomAlphabetic(8));
+        kafkaClient.sendMessage(CREATE_ITEM_TOPIC, itemId.toString(), null, JsonMapper.writeToJson(createEvent));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> itemStateStore.getStatus(itemId).isPresent());
+        return itemId;
+    }
+
+    private ResponseEntity<String> status(final UUID itemId) {
+        return restTemplate.getForEntity("/v1/demo/items/" + itemId + "/status", String.class);
+    }
+}
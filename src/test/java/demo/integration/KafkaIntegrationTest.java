@@ -1,6 +1,8 @@
 package demo.integration;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -12,12 +14,15 @@ import demo.mapper.JsonMapper;
 import demo.repository.ItemRepository;
 import demo.service.ItemStatus;
 import demo.util.TestEventData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpStatus;
@@ -32,17 +37,26 @@ import org.springframework.test.context.ActiveProfiles;
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 @Slf4j
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = { DemoConfiguration.class } )
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
 @ActiveProfiles("test")
-@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-retry" })
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-retry-0", "update-item-retry-1",
+        "update-item-retry-2", "update-item-dlt" })
 public class KafkaIntegrationTest {
 
     final static String CREATE_ITEM_TOPIC = "create-item";
     final static String UPDATE_ITEM_TOPIC = "update-item";
 
+    /**
+     * A resumed retry partition is fetched on the next poll, so a retry may be delivered up to the poll timeout while
+     * paused and the fetch wait after it is due, plus the time to process the records ahead of it.
+     */
+    final static long RETRY_LATENESS_TOLERANCE_MILLISECONDS = 500;
+
     @Autowired
     private TestKafkaClient kafkaClient;
 
@@ -58,6 +72,18 @@ public class KafkaIntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${demo.retry.maxRetryAttempts}")
+    private int maxRetryAttempts;
+
+    @Value("${demo.retry.retryIntervalMilliseconds}")
+    private long retryIntervalMilliseconds;
+
+    @Value("${demo.retry.retryBackoffMultiplier}")
+    private double retryBackoffMultiplier;
+
     @BeforeEach
     public void setUp() {
         itemRepository.deleteAll();
@@ -67,6 +93,15 @@ public class KafkaIntegrationTest {
                 ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
     }
 
+    /**
+     * The instance only reports ready once warmed up and consuming.
+     */
+    @Test
+    public void testReadiness() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/health/readiness", String.class);
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+    }
+
     /**
      * Test the standard scenario where items are created first before update events are received to update them.
      *
@@ -142,8 +177,63 @@ public class KafkaIntegrationTest {
         // Check all messages have ACTIVE status.
         Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
             .until(() -> itemRepository.findAll().stream().allMatch((item) -> item.getStatus().equals(ItemStatus.ACTIVE)));
+
+        // Check the retry delivery timings were measured.
+        assertThat(meterRegistry.find("demo.retry.delivery.lateness").timers().isEmpty(), equalTo(false));
+    }
+
+    /**
+     * Test that an update item event for an item that is never created is retried on each retry topic close to its
+     * configured backoff: the time from the original event to each retry is the backoff accumulated to that retry, plus
+     * the time to process the original delivery, and how late that retry and those before it were delivered.
+     *
+     * A single event is sent, so that no retry waits behind another in its partition, and its timings are taken as the
+     * change in the timers' totals.
+     */
+    @Test
+    public void testRetryTiming() {
+        final int retryTopics = maxRetryAttempts - 1;
+        final List<RetryTiming> before = new ArrayList<>();
+        for (int i=0; i<retryTopics; i++) {
+            before.add(retryTiming(UPDATE_ITEM_TOPIC + "-retry-" + i));
+        }
+
+        UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(updateEvent));
+
+        final String lastRetryTopic = UPDATE_ITEM_TOPIC + "-retry-" + (retryTopics - 1);
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> retryTiming(lastRetryTopic).count > before.get(retryTopics - 1).count);
+
+        long schedule = 0;
+        long backoff = retryIntervalMilliseconds;
+        for (int i=0; i<retryTopics; i++) {
+            schedule += backoff;
+            backoff *= retryBackoffMultiplier;
+            final String topic = UPDATE_ITEM_TOPIC + "-retry-" + i;
+            final RetryTiming after = retryTiming(topic);
+            final double lateness = after.latenessMilliseconds - before.get(i).latenessMilliseconds;
+            final double elapsed = after.elapsedMilliseconds - before.get(i).elapsedMilliseconds;
+            log.info("Retry timing for {}: backoff schedule {} ms, elapsed {} ms, lateness {} ms", topic, schedule, elapsed, lateness);
+
+            assertThat(after.count - before.get(i).count, equalTo(1L));
+            assertThat(lateness, lessThanOrEqualTo((double) RETRY_LATENESS_TOLERANCE_MILLISECONDS));
+            assertThat(elapsed, greaterThanOrEqualTo((double) schedule));
+            assertThat(elapsed, lessThanOrEqualTo((double) schedule + (i + 2) * RETRY_LATENESS_TOLERANCE_MILLISECONDS));
+        }
     }
 
+    private RetryTiming retryTiming(final String topic) {
+        final Timer lateness = meterRegistry.find("demo.retry.delivery.lateness").tag("topic", topic).timer();
+        final Timer elapsed = meterRegistry.find("demo.retry.elapsed").tag("topic", topic).timer();
+        if (lateness == null || elapsed == null) {
+            return new RetryTiming(0, 0, 0);
+        }
+        return new RetryTiming(lateness.count(), lateness.totalTime(TimeUnit.MILLISECONDS), elapsed.totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    private record RetryTiming(long count, double latenessMilliseconds, double elapsedMilliseconds) {}
+
     /**
      * Test where an update item event is received before the corresponding create item.  The update item event is retried
      * but is discarded as the max retry duration is exceeded before the create item event is received.
@@ -0,0 +1,98 @@
+package demo.integration;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.DemoConfiguration;
+import demo.event.CreateItem;
+import demo.mapper.JsonMapper;
+import demo.repository.ItemRepository;
+import demo.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = { DemoConfiguration.class },
+        properties = { "demo.autoscaling.enabled=true", "demo.autoscaling.intervalMilliseconds=500", "demo.autoscaling.cooldownMilliseconds=0",
+                "demo.autoscaling.main.minConcurrency=2", "demo.autoscaling.retry.maxConcurrency=1" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-retry-0", "update-item-retry-1", "update-item-retry-2", "update-item-dlt" })
+public class ListenerConcurrencyIntegrationTest {
+
+    final static String CREATE_ITEM_TOPIC = "create-item";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    /**
+     * The main topic listeners are scaled up to their minimum concurrency, while the retry tier listeners stay at one
+     * consumer, and events are consumed once the containers have restarted.
+     */
+    @Test
+    public void testScaleMainTopicsIndependentlyOfRetryTiers() {
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+                .until(() -> registry.getListenerContainers().stream()
+                        .filter(container -> !isRetryTier(container))
+                        .allMatch(container -> container.isRunning() && ((ConcurrentMessageListenerContainer<?, ?>) container).getConcurrency() == 2));
+        assertThat(registry.getListenerContainers().stream()
+                .filter(this::isRetryTier)
+                .allMatch(container -> ((ConcurrentMessageListenerContainer<?, ?>) container).getConcurrency() == 1), equalTo(true));
+        // Wait until the partitions are assigned to the restarted consumers.
+        registry.getListenerContainers().stream().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
+
+        int totalMessages = 10;
+        Set<UUID> itemIds = new HashSet<>();
+        for (int i=0; i<totalMessages; i++) {
+            UUID itemId = randomUUID();
+            CreateItem createEvent = TestEventData.buildCreateItemEvent(itemId, RandomStringUtils.randomAlphabetic(8));
+            kafkaClient.sendMessage(CREATE_ITEM_TOPIC, JsonMapper.writeToJson(createEvent));
+            itemIds.add(itemId);
+        }
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+                .until(() -> itemRepository.findAllById(itemIds).size() == totalMessages);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/concurrency", String.class);
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("\"tier\":\"retry\""));
+    }
+
+    private boolean isRetryTier(final MessageListenerContainer container) {
+        return container.getMainListenerId() != null && !container.getMainListenerId().equals(container.getListenerId());
+    }
+}
@@ -18,8 +18,12 @@ public class TestKafkaClient {
     private final KafkaTemplate kafkaTemplate;
 
     public SendResult sendMessage(String topic, String data) {
+        return sendMessage(topic, null, null, data);
+    }
+
+    public SendResult sendMessage(String topic, String key, Long timestamp, String data) {
         try {
-            final ProducerRecord<String, String> record = new ProducerRecord<>(topic, data);
+            final ProducerRecord<String, String> record = new ProducerRecord<>(topic, null, timestamp, key, data);
             final SendResult result = (SendResult) kafkaTemplate.send(record).get();
             final RecordMetadata metadata = result.getRecordMetadata();
 
@@ -0,0 +1,107 @@
+package demo.integration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import demo.DemoConfiguration;
+import demo.event.UpdateItem;
+import demo.mapper.JsonMapper;
+import demo.service.ItemStatus;
+import demo.tracing.SpanCollector;
+import demo.tracing.SpanData;
+import demo.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItems;
+
+@Slf4j
+@SpringBootTest(classes = { DemoConfiguration.class }, properties = { "demo.tracing.sampleRate=1.0" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(controlledShutdown = true, topics = { "create-item", "update-item", "update-item-retry-0", "update-item-retry-1",
+        "update-item-retry-2", "update-item-dlt" })
+public class TracingIntegrationTest {
+
+    final static String UPDATE_ITEM_TOPIC = "update-item";
+
+    @Autowired
+    private TestKafkaClient kafkaClient;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private SpanCollector spanCollector;
+
+    @BeforeEach
+    public void setUp() {
+        // Wait until the partitions are assigned.
+        registry.getListenerContainers().stream().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic()));
+    }
+
+    /**
+     * An update item event for an item that is never created is retried on each retry topic then dead lettered, and is
+     * traced as one trace, with each hop a child of the processing of the hop before, and the time waiting in each retry
+     * tier about its backoff.
+     */
+    @Test
+    public void testTraceAcrossRetries() {
+        final UpdateItem updateEvent = TestEventData.buildUpdateItemEvent(randomUUID(), ItemStatus.ACTIVE);
+        kafkaClient.sendMessage(UPDATE_ITEM_TOPIC, JsonMapper.writeToJson(updateEvent));
+
+        Awaitility.await().atMost(30, TimeUnit.SECONDS).pollDelay(100, TimeUnit.MILLISECONDS)
+            .until(() -> updateItemTrace().stream().anyMatch(span -> span.getName().equals("process update-item-dlt")));
+        final List<SpanData> spans = updateItemTrace();
+        spans.forEach(span -> log.info("Span: {}", span));
+
+        final List<String> names = spans.stream().map(SpanData::getName).collect(Collectors.toList());
+        assertThat(names, hasItems("wait update-item", "wait update-item-retry-0", "wait update-item-retry-1", "wait update-item-retry-2",
+                "wait update-item-dlt", "deserialize", "db lookup"));
+        assertThat(names.stream().filter(name -> name.equals("db lookup")).count(), equalTo(4L));
+
+        final Map<String, SpanData> byName = spans.stream().filter(span -> span.getName().startsWith("process") || span.getName().startsWith("wait"))
+                .collect(Collectors.toMap(SpanData::getName, Function.identity()));
+        String parent = null;
+        for (String topic : List.of("update-item", "update-item-retry-0", "update-item-retry-1", "update-item-retry-2", "update-item-dlt")) {
+            assertThat(byName.get("process " + topic).getParentSpanId(), equalTo(parent));
+            assertThat(byName.get("wait " + topic).getParentSpanId(), equalTo(parent));
+            parent = byName.get("process " + topic).getSpanId();
+        }
+        // The backoff runs from the failure, shortly before the retry is published.
+        assertThat(byName.get("wait update-item-retry-0").getDurationMicros(), greaterThanOrEqualTo(800_000L));
+        assertThat(byName.get("wait update-item-retry-1").getDurationMicros(), greaterThanOrEqualTo(1800_000L));
+        assertThat(byName.get("wait update-item-retry-2").getDurationMicros(), greaterThanOrEqualTo(3800_000L));
+    }
+
+    /**
+     * The spans of the trace started by the update item event, the only one sent.
+     */
+    private List<SpanData> updateItemTrace() {
+        return spanCollector.getTraces().values().stream()
+                .filter(spans -> spans.stream().anyMatch(span -> span.getName().equals("process " + UPDATE_ITEM_TOPIC)))
+                .findFirst()
+                .orElse(List.of());
+    }
+}
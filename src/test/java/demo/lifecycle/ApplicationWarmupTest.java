@@ -0,0 +1,62 @@
+package demo.lifecycle;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+import demo.repository.ItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ApplicationWarmupTest {
+
+    private DataSource dataSourceMock;
+    private Connection connectionMock;
+    private ItemRepository itemRepositoryMock;
+    private ApplicationWarmup warmup;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataSourceMock = mock(DataSource.class);
+        connectionMock = mock(Connection.class);
+        itemRepositoryMock = mock(ItemRepository.class);
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        warmup = new ApplicationWarmup(dataSourceMock, itemRepositoryMock, 3, 5);
+    }
+
+    /**
+     * Ensure the connections are all opened, and the queries exercised, before the warmup reports complete.
+     */
+    @Test
+    public void testStart() throws Exception {
+        assertThat(warmup.isRunning(), equalTo(false));
+
+        warmup.start();
+
+        verify(dataSourceMock, times(3)).getConnection();
+        verify(connectionMock, times(3)).close();
+        verify(itemRepositoryMock, times(5)).findById(any());
+        verify(itemRepositoryMock, times(5)).updateStatus(any(), any());
+        assertThat(warmup.isRunning(), equalTo(true));
+    }
+
+    /**
+     * A failed warmup must not prevent the consumers from starting.
+     */
+    @Test
+    public void testStart_DatabaseUnavailable() throws Exception {
+        when(dataSourceMock.getConnection()).thenThrow(new SQLException("unavailable"));
+
+        warmup.start();
+
+        assertThat(warmup.isRunning(), equalTo(true));
+    }
+}
@@ -0,0 +1,63 @@
+package demo.lifecycle;
+
+import java.util.List;
+import java.util.Optional;
+
+import demo.autoscaling.ListenerConcurrencyController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConsumerReadinessHealthIndicatorTest {
+
+    private static final String LISTENER_ID = "update-item-listener";
+
+    private ApplicationWarmup applicationWarmupMock;
+    private KafkaListenerEndpointRegistry registryMock;
+    private MessageListenerContainer containerMock;
+    private ListenerConcurrencyController controllerMock;
+
+    @BeforeEach
+    public void setUp() {
+        applicationWarmupMock = mock(ApplicationWarmup.class);
+        registryMock = mock(KafkaListenerEndpointRegistry.class);
+        containerMock = mock(MessageListenerContainer.class);
+        controllerMock = mock(ListenerConcurrencyController.class);
+        when(applicationWarmupMock.isRunning()).thenReturn(true);
+        when(registryMock.getListenerContainers()).thenReturn(List.of(containerMock));
+        when(containerMock.getListenerId()).thenReturn(LISTENER_ID);
+        when(containerMock.isAutoStartup()).thenReturn(true);
+    }
+
+    @Test
+    public void testHealth_Running() {
+        when(containerMock.isRunning()).thenReturn(true);
+
+        assertThat(new ConsumerReadinessHealthIndicator(applicationWarmupMock, registryMock, Optional.empty()).health().getStatus(),
+                equalTo(Status.UP));
+    }
+
+    @Test
+    public void testHealth_Stopped() {
+        assertThat(new ConsumerReadinessHealthIndicator(applicationWarmupMock, registryMock, Optional.of(controllerMock)).health().getStatus(),
+                equalTo(Status.OUT_OF_SERVICE));
+    }
+
+    /**
+     * A container stopped by the autoscaler to change its concurrency does not take the instance out of service.
+     */
+    @Test
+    public void testHealth_Restarting() {
+        when(controllerMock.isRestarting(LISTENER_ID)).thenReturn(true);
+
+        assertThat(new ConsumerReadinessHealthIndicator(applicationWarmupMock, registryMock, Optional.of(controllerMock)).health().getStatus(),
+                equalTo(Status.UP));
+    }
+}
@@ -0,0 +1,35 @@
+package demo.lifecycle;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Mockito.mock;
+
+public class StartupTimerTest {
+
+    /**
+     * Only the first message consumed is timed.
+     */
+    @Test
+    public void testIntercept() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StartupTimer timer = new StartupTimer(meterRegistry, mock(ConfigurableApplicationContext.class), false);
+        assertThat(timer.getFirstMessageMillis(), equalTo(-1L));
+
+        timer.intercept(new ConsumerRecord<>("create-item", 0, 0, null, "payload"), null);
+        long firstMessageMillis = timer.getFirstMessageMillis();
+        Thread.sleep(5);
+        timer.intercept(new ConsumerRecord<>("create-item", 0, 1, null, "payload"), null);
+
+        assertThat(firstMessageMillis, greaterThan(0L));
+        assertThat(timer.getFirstMessageMillis(), equalTo(firstMessageMillis));
+        assertThat(meterRegistry.find(StartupTimer.FIRST_MESSAGE_METRIC).timeGauge().value(TimeUnit.MILLISECONDS), equalTo((double) firstMessageMillis));
+    }
+}
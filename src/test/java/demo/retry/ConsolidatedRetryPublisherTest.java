@@ -0,0 +1,133 @@
+package demo.retry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import demo.consumer.MessageHeaders;
+import demo.tracing.Span;
+import demo.tracing.SpanExporter;
+import demo.tracing.TraceContext;
+import demo.tracing.Tracer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConsolidatedRetryPublisherTest {
+
+    private KafkaTemplate<String, String> kafkaTemplateMock;
+    private Tracer tracer;
+    private ConsolidatedRetryPublisher publisher;
+
+    @BeforeEach
+    public void setUp() {
+        kafkaTemplateMock = mockKafkaTemplate();
+        when(kafkaTemplateMock.send(ArgumentMatchers.<ProducerRecord<String, String>>any())).thenReturn(CompletableFuture.completedFuture(null));
+        tracer = new Tracer(mock(SpanExporter.class), 0);
+        publisher = new ConsolidatedRetryPublisher(kafkaTemplateMock, tracer, true, "retry", 10000, 2, 4, 60000);
+    }
+
+    /**
+     * The delays follow the configured backoff, capped at the Spring Retry default maximum interval.
+     */
+    @Test
+    public void testDelayFor() {
+        assertThat(publisher.delayFor(2), equalTo(10000L));
+        assertThat(publisher.delayFor(3), equalTo(20000L));
+        assertThat(publisher.delayFor(4), equalTo(30000L));
+    }
+
+    /**
+     * The first failure is published to the retry topic, stamped with its original topic and due time.
+     */
+    @Test
+    public void testScheduleRetry_FirstRetry() {
+        long before = System.currentTimeMillis();
+
+        publisher.scheduleRetry("update-item", "key", "payload", before - 100, null);
+
+        ProducerRecord<String, String> record = sentRecord();
+        assertThat(record.topic(), equalTo("retry"));
+        assertThat(record.key(), equalTo("key"));
+        assertThat(ConsolidatedRetryPublisher.headerValue(record.headers(), MessageHeaders.ORIGINAL_RECEIVED_TIMESTAMP).get(), equalTo(before - 100));
+        assertThat(ConsolidatedRetryPublisher.headerString(record.headers(), MessageHeaders.ORIGINAL_TOPIC).get(), equalTo("update-item"));
+        assertThat(ConsolidatedRetryPublisher.headerValue(record.headers(), MessageHeaders.RETRY_ATTEMPT).get(), equalTo(2L));
+        assertThat(ConsolidatedRetryPublisher.headerValue(record.headers(), MessageHeaders.RETRY_DUE_TIMESTAMP).get(), greaterThanOrEqualTo(before + 10000));
+    }
+
+    /**
+     * The retry carries on the trace of the event being processed.
+     */
+    @Test
+    public void testScheduleRetry_TraceContext() {
+        final Span span = tracer.startSpan("process update-item", new TraceContext(1, 2, false));
+
+        publisher.scheduleRetry("update-item", "key", "payload", System.currentTimeMillis(), null);
+        span.close();
+
+        assertThat(TraceContext.fromBytes(sentRecord().headers().lastHeader(MessageHeaders.TRACE_CONTEXT).value()).get(), equalTo(span.getContext()));
+    }
+
+    /**
+     * Once the attempts are exhausted the event is dead lettered.
+     */
+    @Test
+    public void testScheduleRetry_AttemptsExhausted() {
+        publisher.scheduleRetry("update-item", "key", "payload", System.currentTimeMillis(), headers(4, System.currentTimeMillis()));
+
+        assertThat(sentRecord().topic(), equalTo("update-item-dlt"));
+    }
+
+    /**
+     * Once the maximum retry duration has passed the event is dead lettered.
+     */
+    @Test
+    public void testScheduleRetry_DurationExceeded() {
+        publisher.scheduleRetry("update-item", "key", "payload", System.currentTimeMillis(), headers(2, System.currentTimeMillis() - 61000));
+
+        assertThat(sentRecord().topic(), equalTo("update-item-dlt"));
+    }
+
+    /**
+     * The retry duration runs from the timestamp of the record that first failed, so a record already older than the
+     * maximum retry duration is dead lettered, still keyed by its original key.
+     */
+    @Test
+    public void testScheduleRetry_OriginalRecordTooOld() {
+        publisher.scheduleRetry("update-item", "key", "payload", System.currentTimeMillis() - 61000, null);
+
+        ProducerRecord<String, String> record = sentRecord();
+        assertThat(record.topic(), equalTo("update-item-dlt"));
+        assertThat(record.key(), equalTo("key"));
+    }
+
+    private RecordHeaders headers(long attempt, long originalReceivedTimestamp) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(MessageHeaders.RETRY_ATTEMPT, String.valueOf(attempt).getBytes(StandardCharsets.UTF_8));
+        headers.add(MessageHeaders.ORIGINAL_RECEIVED_TIMESTAMP, String.valueOf(originalReceivedTimestamp).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, String> sentRecord() {
+        ArgumentCaptor<ProducerRecord<String, String>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplateMock).send(captor.capture());
+        return captor.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaTemplate<String, String> mockKafkaTemplate() {
+        return mock(KafkaTemplate.class);
+    }
+}
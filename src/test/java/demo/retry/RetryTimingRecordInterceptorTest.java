@@ -0,0 +1,74 @@
+package demo.retry;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import demo.consumer.MessageHeaders;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RetryTimingRecordInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetryTimingRecordInterceptor interceptor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new RetryTimingRecordInterceptor(meterRegistry);
+    }
+
+    /**
+     * The lateness against the due time is recorded from Spring's retry topic headers.
+     */
+    @Test
+    public void testIntercept_RetryTopic() {
+        long now = System.currentTimeMillis();
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("update-item-retry-0", 0, 0, null, "payload");
+        record.headers().add(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP, BigInteger.valueOf(now - 250).toByteArray());
+        record.headers().add(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS, ByteBuffer.allocate(Integer.BYTES).putInt(2).array());
+        record.headers().add(RetryTopicHeaders.DEFAULT_HEADER_ORIGINAL_TIMESTAMP, BigInteger.valueOf(now - 1250).toByteArray());
+
+        interceptor.intercept(record, null);
+
+        Timer lateness = meterRegistry.find(RetryTimingRecordInterceptor.LATENESS_METRIC).tag("topic", "update-item-retry-0").tag("attempt", "2").timer();
+        assertThat(lateness.count(), equalTo(1L));
+        assertThat(lateness.totalTime(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(250.0));
+        Timer elapsed = meterRegistry.find(RetryTimingRecordInterceptor.ELAPSED_METRIC).timer();
+        assertThat(elapsed.totalTime(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(1250.0));
+    }
+
+    /**
+     * A consolidated retry record delivered before it is due is not measured, as it will be redelivered.
+     */
+    @Test
+    public void testIntercept_NotYetDue() {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("retry", 0, 0, null, "payload");
+        record.headers().add(MessageHeaders.RETRY_DUE_TIMESTAMP, String.valueOf(System.currentTimeMillis() + 10000).getBytes(StandardCharsets.UTF_8));
+
+        interceptor.intercept(record, null);
+
+        assertThat(meterRegistry.find(RetryTimingRecordInterceptor.LATENESS_METRIC).timer(), nullValue());
+    }
+
+    /**
+     * Records from the main topic carry no due time and are not measured.
+     */
+    @Test
+    public void testIntercept_NotARetry() {
+        interceptor.intercept(new ConsumerRecord<>("update-item", 0, 0, null, "payload"), null);
+
+        assertThat(meterRegistry.getMeters().isEmpty(), equalTo(true));
+    }
+}
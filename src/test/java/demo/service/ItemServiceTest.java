@@ -8,11 +8,16 @@ import demo.event.CreateItem;
 import demo.event.UpdateItem;
 import demo.exception.RetryableMessagingException;
 import demo.repository.ItemRepository;
+import demo.state.ItemStateStore;
+import demo.tracing.SpanExporter;
+import demo.tracing.Tracer;
 import demo.util.TestEntityData;
 import demo.util.TestEventData;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.CannotCreateTransactionException;
 
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -20,7 +25,9 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -29,11 +36,13 @@ public class ItemServiceTest {
 
     private ItemService service;
     private ItemRepository itemRepositoryMock;
+    private ItemStateStore itemStateStoreMock;
 
     @BeforeEach
     public void setUp() {
         itemRepositoryMock = mock(ItemRepository.class);
-        service = new ItemService(itemRepositoryMock);
+        itemStateStoreMock = mock(ItemStateStore.class);
+        service = new ItemService(itemRepositoryMock, itemStateStoreMock, new Tracer(mock(SpanExporter.class), 0));
     }
 
     @Test
@@ -59,6 +68,22 @@ public class ItemServiceTest {
         verify(itemRepositoryMock, times(1)).save(argThat(s -> s.getStatus().equals(ItemStatus.ACTIVE)));
     }
 
+    /**
+     * Invalid transitions are discarded when validated against the database too.
+     */
+    @Test
+    public void testUpdateItem_InvalidTransition() {
+        UUID itemId = randomUUID();
+        Item item = TestEntityData.buildItem(itemId, "my-item");
+        item.setStatus(ItemStatus.CANCELLED);
+        when(itemRepositoryMock.findById(itemId)).thenReturn(Optional.of(item));
+
+        service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE));
+
+        verify(itemRepositoryMock, never()).save(any());
+        assertThat(item.getStatus(), equalTo(ItemStatus.CANCELLED));
+    }
+
     @Test
     public void testUpdateItem_ItemRetried() {
         UUID itemId = randomUUID();
@@ -73,4 +98,89 @@ public class ItemServiceTest {
         assertThat(exception.getMessage(), equalTo("Retry event."));
         verify(itemRepositoryMock, times(0)).save(any());
     }
+
+    /**
+     * A database timeout or outage is retried, rather than the update being dropped.
+     */
+    @Test
+    public void testUpdateItem_DatabaseUnavailable_ItemRetried() {
+        UUID itemId = randomUUID();
+        when(itemRepositoryMock.findById(itemId)).thenThrow(new QueryTimeoutException("Query timed out"));
+
+        assertThrows(RetryableMessagingException.class, () -> service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE)));
+
+        when(itemStateStoreMock.isAuthoritativeFor(itemId)).thenReturn(true);
+        when(itemStateStoreMock.getStatus(itemId)).thenReturn(Optional.of(ItemStatus.NEW));
+        when(itemRepositoryMock.updateStatus(itemId, ItemStatus.NEW, ItemStatus.ACTIVE)).thenThrow(new CannotCreateTransactionException("Connection is not available"));
+
+        assertThrows(RetryableMessagingException.class, () -> service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE)));
+        verify(itemStateStoreMock, never()).put(itemId, ItemStatus.ACTIVE);
+    }
+
+    /**
+     * When the state store owns the item's partition a missing item is retried without a database lookup.
+     */
+    @Test
+    public void testUpdateItem_StateStore_ItemRetried() {
+        UUID itemId = randomUUID();
+        when(itemStateStoreMock.isAuthoritativeFor(itemId)).thenReturn(true);
+        when(itemStateStoreMock.getStatus(itemId)).thenReturn(Optional.empty());
+
+        UpdateItem testEvent = TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE);
+
+        assertThrows(RetryableMessagingException.class, () -> service.updateItem(testEvent));
+
+        verify(itemRepositoryMock, never()).findById(any());
+        verify(itemRepositoryMock, never()).updateStatus(any(), any(), any());
+    }
+
+    @Test
+    public void testUpdateItem_StateStore_ItemUpdated() {
+        UUID itemId = randomUUID();
+        when(itemStateStoreMock.isAuthoritativeFor(itemId)).thenReturn(true);
+        when(itemStateStoreMock.getStatus(itemId)).thenReturn(Optional.of(ItemStatus.NEW));
+        when(itemRepositoryMock.updateStatus(itemId, ItemStatus.NEW, ItemStatus.ACTIVE)).thenReturn(1);
+
+        service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE));
+
+        verify(itemRepositoryMock, never()).findById(any());
+        verify(itemRepositoryMock, times(1)).updateStatus(itemId, ItemStatus.NEW, ItemStatus.ACTIVE);
+        verify(itemStateStoreMock, times(1)).put(itemId, ItemStatus.ACTIVE);
+    }
+
+    /**
+     * When the cached status is stale, as another instance has since cancelled the item, the conditional write fails and
+     * the update is validated against the database instead, refreshing the cached entry.
+     */
+    @Test
+    public void testUpdateItem_StateStore_Stale() {
+        UUID itemId = randomUUID();
+        Item item = TestEntityData.buildItem(itemId, "my-item");
+        item.setStatus(ItemStatus.CANCELLED);
+        when(itemStateStoreMock.isAuthoritativeFor(itemId)).thenReturn(true);
+        when(itemStateStoreMock.getStatus(itemId)).thenReturn(Optional.of(ItemStatus.NEW));
+        when(itemRepositoryMock.updateStatus(itemId, ItemStatus.NEW, ItemStatus.ACTIVE)).thenReturn(0);
+        when(itemRepositoryMock.findById(itemId)).thenReturn(Optional.of(item));
+
+        service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE));
+
+        verify(itemRepositoryMock, never()).save(any());
+        verify(itemStateStoreMock, times(1)).put(itemId, ItemStatus.CANCELLED);
+        verify(itemStateStoreMock, never()).put(itemId, ItemStatus.ACTIVE);
+    }
+
+    /**
+     * Only actual changes are written, and invalid transitions are discarded.
+     */
+    @Test
+    public void testUpdateItem_StateStore_NoWrite() {
+        UUID itemId = randomUUID();
+        when(itemStateStoreMock.isAuthoritativeFor(itemId)).thenReturn(true);
+        when(itemStateStoreMock.getStatus(itemId)).thenReturn(Optional.of(ItemStatus.CANCELLED));
+
+        service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.CANCELLED));
+        service.updateItem(TestEventData.buildUpdateItemEvent(itemId, ItemStatus.ACTIVE));
+
+        verify(itemRepositoryMock, never()).updateStatus(eq(itemId), any(), any());
+    }
 }
@@ -0,0 +1,152 @@
+package demo.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ItemIdIndexTest {
+
+    /**
+     * Ensure entries survive the table growing well beyond its initial capacity.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testPutAndGet(boolean offHeap) {
+        ItemIdIndex index = new ItemIdIndex(16, offHeap);
+        List<UUID> itemIds = new ArrayList<>();
+        for (int i=0; i<10_000; i++) {
+            UUID itemId = randomUUID();
+            index.put(itemId, (byte) (i % 3 + 1));
+            itemIds.add(itemId);
+        }
+
+        assertThat(index.size(), equalTo(10_000));
+        for (int i=0; i<itemIds.size(); i++) {
+            assertThat(index.get(itemIds.get(i)), equalTo((byte) (i % 3 + 1)));
+        }
+        assertThat(index.get(randomUUID()), equalTo((byte) 0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testUpdateAndRemove(boolean offHeap) {
+        ItemIdIndex index = new ItemIdIndex(16, offHeap);
+        UUID itemId = randomUUID();
+        UUID otherItemId = randomUUID();
+
+        index.put(itemId, (byte) 1);
+        index.put(otherItemId, (byte) 1);
+        index.put(itemId, (byte) 2);
+        assertThat(index.get(itemId), equalTo((byte) 2));
+        assertThat(index.size(), equalTo(2));
+
+        // Leaves a present entry alone.
+        assertThat(index.putIfAbsent(itemId, (byte) 3), equalTo(false));
+        assertThat(index.get(itemId), equalTo((byte) 2));
+
+        index.remove(itemId);
+        assertThat(index.get(itemId), equalTo((byte) 0));
+        assertThat(index.get(otherItemId), equalTo((byte) 1));
+
+        index.removeIf(otherItemId::equals);
+        assertThat(index.get(otherItemId), equalTo((byte) 0));
+        assertThat(index.size(), equalTo(0));
+    }
+
+    /**
+     * Repeated removes and re-inserts must reclaim deleted slots rather than fill the table.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testChurn(boolean offHeap) {
+        ItemIdIndex index = new ItemIdIndex(16, offHeap);
+        for (int i=0; i<100_000; i++) {
+            UUID itemId = randomUUID();
+            index.put(itemId, (byte) 1);
+            index.remove(itemId);
+        }
+        assertThat(index.size(), equalTo(0));
+        assertThat(index.footprintBytes() <= 32 * 17, equalTo(true));
+    }
+
+    /**
+     * Lookups racing puts that rehash the table still find every item already present, and do not throw.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testConcurrentGetAndPut(boolean offHeap) throws Exception {
+        ItemIdIndex index = new ItemIdIndex(16, offHeap);
+        List<UUID> itemIds = new ArrayList<>();
+        for (int i=0; i<1_000; i++) {
+            UUID itemId = randomUUID();
+            index.put(itemId, (byte) 1);
+            itemIds.add(itemId);
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r=0; r<3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        for (UUID itemId : itemIds) {
+                            assertThat(index.get(itemId), equalTo((byte) 1));
+                        }
+                    }
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                try {
+                    // Grows the table through many rehashes.
+                    for (int i=0; i<500_000; i++) {
+                        index.put(randomUUID(), (byte) 2);
+                    }
+                } finally {
+                    writing.set(false);
+                }
+            });
+
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(index.size(), equalTo(501_000));
+    }
+
+    /**
+     * A full index refuses new items, but still updates and returns the items it holds.
+     */
+    @Test
+    public void testFull() {
+        ItemIdIndex index = new ItemIdIndex(16, false, 32);
+        List<UUID> itemIds = new ArrayList<>();
+        for (int i=0; i<24; i++) {
+            UUID itemId = randomUUID();
+            index.put(itemId, (byte) 1);
+            itemIds.add(itemId);
+        }
+
+        assertThrows(IllegalStateException.class, () -> index.put(randomUUID(), (byte) 1));
+        assertThrows(IllegalStateException.class, () -> index.putIfAbsent(randomUUID(), (byte) 1));
+        index.put(itemIds.get(0), (byte) 2);
+        assertThat(index.get(itemIds.get(0)), equalTo((byte) 2));
+        assertThat(index.size(), equalTo(24));
+    }
+}
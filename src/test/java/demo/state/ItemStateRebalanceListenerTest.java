@@ -0,0 +1,206 @@
+package demo.state;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import demo.repository.ItemRepository;
+import demo.repository.ItemStatusView;
+import demo.service.ItemStatus;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemStateRebalanceListenerTest {
+
+    private static final String CREATE_ITEM_TOPIC = "create-item";
+    private static final int PARTITION_COUNT = 2;
+    private static final TopicPartition PARTITION_0 = new TopicPartition(CREATE_ITEM_TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(CREATE_ITEM_TOPIC, 1);
+
+    private ItemStateStore store;
+    private ItemRepository itemRepositoryMock;
+    private Consumer<?, ?> consumerMock;
+    private ItemStateRebalanceListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        store = new ItemStateStore(true, 16, false);
+        itemRepositoryMock = mock(ItemRepository.class);
+        consumerMock = mock(Consumer.class);
+        when(consumerMock.partitionsFor(CREATE_ITEM_TOPIC)).thenReturn(List.of(
+                new PartitionInfo(CREATE_ITEM_TOPIC, 0, null, null, null), new PartitionInfo(CREATE_ITEM_TOPIC, 1, null, null, null)));
+        listener = new ItemStateRebalanceListener(store, itemRepositoryMock, CREATE_ITEM_TOPIC, 2, 60000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        listener.shutdown();
+    }
+
+    /**
+     * The statuses are read a page at a time, each after the last id of the page before, until a short page.
+     */
+    @Test
+    public void testLoadPages() {
+        List<UUID> itemIds = List.of(randomUUID(), randomUUID(), randomUUID());
+        when(itemRepositoryMock.findByOrderByIdAsc(PageRequest.of(0, 2)))
+                .thenReturn(List.of(view(itemIds.get(0)), view(itemIds.get(1))));
+        when(itemRepositoryMock.findByIdGreaterThanOrderByIdAsc(itemIds.get(1), PageRequest.of(0, 2)))
+                .thenReturn(List.of(view(itemIds.get(2))));
+
+        List<Integer> partitions = List.of(0, 1);
+        listener.load(partitions, store.assign(partitions, PARTITION_COUNT));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> store.isAuthoritativeFor(itemIds.get(0)));
+        itemIds.forEach(itemId -> {
+            assertThat(store.isAuthoritativeFor(itemId), equalTo(true));
+            assertThat(store.getStatus(itemId).get(), equalTo(ItemStatus.ACTIVE));
+        });
+        verify(itemRepositoryMock, never()).findAll();
+    }
+
+    /**
+     * A partition assigned while a scan is running joins it, and is loaded once the scan has carried on from the start to
+     * where it joined, rather than by a scan of its own.
+     */
+    @Test
+    public void testLoadJoinsRunningScan() {
+        List<UUID> itemIds = List.of(randomUUID(), randomUUID(), randomUUID());
+        long generation = store.assign(List.of(0), PARTITION_COUNT);
+        when(itemRepositoryMock.findByOrderByIdAsc(PageRequest.of(0, 2))).thenAnswer(invocation -> {
+            // Assigned while the first page is read.
+            listener.load(List.of(1), store.assign(List.of(1), PARTITION_COUNT));
+            return List.of(view(itemIds.get(0)), view(itemIds.get(1)));
+        }).thenReturn(List.of(view(itemIds.get(0)), view(itemIds.get(1))));
+        when(itemRepositoryMock.findByIdGreaterThanOrderByIdAsc(itemIds.get(1), PageRequest.of(0, 2)))
+                .thenReturn(List.of(view(itemIds.get(2))));
+
+        listener.load(List.of(0), generation);
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> itemIds.stream().allMatch(store::isAuthoritativeFor));
+        itemIds.forEach(itemId -> assertThat(store.getStatus(itemId).get(), equalTo(ItemStatus.ACTIVE)));
+        // The start once for the first scan, and again for the second partition to the page it joined after.
+        verify(itemRepositoryMock, times(2)).findByOrderByIdAsc(any());
+        verify(itemRepositoryMock, times(1)).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    /**
+     * A failed load leaves the partitions to the database.
+     */
+    @Test
+    public void testLoadFailed() {
+        UUID itemId = randomUUID();
+        when(itemRepositoryMock.findByOrderByIdAsc(any())).thenThrow(new RuntimeException("failed"));
+
+        List<Integer> partitions = List.of(0, 1);
+        listener.load(partitions, store.assign(partitions, PARTITION_COUNT));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> verify(itemRepositoryMock).findByOrderByIdAsc(any()));
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(false));
+    }
+
+    /**
+     * A partition assigned back with its committed offset unchanged, as on moving between this instance's consumers, is
+     * reclaimed with its items rather than loaded again.
+     */
+    @Test
+    public void testReclaimUnconsumedPartition() {
+        UUID itemId = itemOnPartition0();
+        when(consumerMock.committed(anySet())).thenReturn(Map.of(PARTITION_0, new OffsetAndMetadata(5)));
+        listener.onPartitionsAssigned(consumerMock, List.of(PARTITION_0));
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> store.isAuthoritativeFor(itemId));
+        store.put(itemId, ItemStatus.ACTIVE);
+
+        listener.onPartitionsRevokedAfterCommit(consumerMock, List.of(PARTITION_0));
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(false));
+        listener.onPartitionsAssigned(consumerMock, List.of(PARTITION_0));
+
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(true));
+        assertThat(store.getStatus(itemId).get(), equalTo(ItemStatus.ACTIVE));
+        verify(itemRepositoryMock, times(1)).findByOrderByIdAsc(any());
+    }
+
+    /**
+     * A partition assigned back once another instance has committed on it is loaded again, as creates may have been
+     * consumed meanwhile.
+     */
+    @Test
+    public void testReloadConsumedPartition() {
+        UUID itemId = itemOnPartition0();
+        when(consumerMock.committed(anySet())).thenReturn(Map.of(PARTITION_0, new OffsetAndMetadata(5)));
+        listener.onPartitionsAssigned(consumerMock, List.of(PARTITION_0));
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> store.isAuthoritativeFor(itemId));
+        store.put(itemId, ItemStatus.ACTIVE);
+        listener.onPartitionsRevokedAfterCommit(consumerMock, List.of(PARTITION_0));
+
+        when(consumerMock.committed(anySet())).thenReturn(Map.of(PARTITION_0, new OffsetAndMetadata(7)));
+        listener.onPartitionsAssigned(consumerMock, List.of(PARTITION_0));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> store.isAuthoritativeFor(itemId));
+        assertThat(store.getStatus(itemId).isPresent(), equalTo(false));
+        verify(itemRepositoryMock, times(2)).findByOrderByIdAsc(any());
+    }
+
+    /**
+     * A released partition not assigned back is evicted once the release period has passed.
+     */
+    @Test
+    public void testEvictReleasedPartition() {
+        listener.shutdown();
+        listener = new ItemStateRebalanceListener(store, itemRepositoryMock, CREATE_ITEM_TOPIC, 2, 100);
+        UUID itemId = itemOnPartition0();
+        listener.onPartitionsAssigned(consumerMock, List.of(PARTITION_0, PARTITION_1));
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> store.isAuthoritativeFor(itemId));
+        store.put(itemId, ItemStatus.ACTIVE);
+
+        listener.onPartitionsRevokedAfterCommit(consumerMock, List.of(PARTITION_0));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> store.getStatus(itemId).isEmpty());
+    }
+
+    /**
+     * An item on partition 0, with the partition count set by assigning and revoking another partition.
+     */
+    private UUID itemOnPartition0() {
+        store.assign(List.of(1), PARTITION_COUNT);
+        UUID itemId = randomUUID();
+        while (store.partitionFor(itemId) != 0) {
+            itemId = randomUUID();
+        }
+        store.revoke(List.of(1));
+        return itemId;
+    }
+
+    private static ItemStatusView view(final UUID itemId) {
+        return new ItemStatusView() {
+            @Override
+            public UUID getId() {
+                return itemId;
+            }
+
+            @Override
+            public ItemStatus getStatus() {
+                return ItemStatus.ACTIVE;
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package demo.state;
+
+import java.util.List;
+import java.util.UUID;
+
+import demo.domain.Item;
+import demo.service.ItemStatus;
+import demo.util.TestEntityData;
+import org.junit.jupiter.api.Test;
+
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ItemStateStoreTest {
+
+    private static final int PARTITION_COUNT = 4;
+
+    /**
+     * Items are only loaded, and the store is only authoritative, for the assigned partitions once loaded.
+     */
+    @Test
+    public void testAssignAndRevoke() {
+        ItemStateStore store = new ItemStateStore(true, 16, false);
+        Item item = TestEntityData.buildItem(randomUUID(), "my-item");
+        UUID otherItemId = randomUUID();
+
+        // Work out which partitions the items fall on.
+        store.assign(List.of(0), PARTITION_COUNT);
+        int partition = store.partitionFor(item.getId());
+        store.revoke(List.of(0));
+
+        long generation = store.assign(List.of(partition), PARTITION_COUNT);
+        assertThat(store.load(item.getId(), item.getStatus()), equalTo(true));
+        assertThat(store.isAuthoritativeFor(item.getId()), equalTo(false));
+        store.loaded(List.of(partition), generation);
+        assertThat(store.isAuthoritativeFor(item.getId()), equalTo(true));
+        assertThat(store.getStatus(item.getId()).get(), equalTo(ItemStatus.ACTIVE));
+        assertThat(store.isAuthoritativeFor(otherItemId), equalTo(store.partitionFor(otherItemId) == partition));
+
+        store.revoke(List.of(partition));
+        assertThat(store.isAuthoritativeFor(item.getId()), equalTo(false));
+        assertThat(store.getStatus(item.getId()).isPresent(), equalTo(false));
+    }
+
+    /**
+     * A released partition keeps its items, and updates to them, without answering for them until reclaimed, whereas a
+     * revoked one can no longer be reclaimed.
+     */
+    @Test
+    public void testReleaseAndReclaim() {
+        ItemStateStore store = new ItemStateStore(true, 16, false);
+        UUID itemId = randomUUID();
+        store.assign(List.of(0), PARTITION_COUNT);
+        int partition = store.partitionFor(itemId);
+        store.revoke(List.of(0));
+
+        store.loaded(List.of(partition), store.assign(List.of(partition), PARTITION_COUNT));
+        store.put(itemId, ItemStatus.ACTIVE);
+        assertThat(store.release(List.of(partition)), equalTo(List.of(partition)));
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(false));
+        assertThat(store.isHeld(partition), equalTo(false));
+        store.put(itemId, ItemStatus.CANCELLED);
+
+        assertThat(store.reclaim(partition), equalTo(true));
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(true));
+        assertThat(store.getStatus(itemId).get(), equalTo(ItemStatus.CANCELLED));
+
+        store.release(List.of(partition));
+        store.revoke(List.of(partition));
+        assertThat(store.reclaim(partition), equalTo(false));
+        assertThat(store.getStatus(itemId).isPresent(), equalTo(false));
+    }
+
+    /**
+     * Items created or updated while the partition is loading are kept rather than overwritten by the load, and a load
+     * overtaken by the partition being revoked and assigned again does not mark it as owned.
+     */
+    @Test
+    public void testLoadRacingUpdatesAndRebalances() {
+        ItemStateStore store = new ItemStateStore(true, 16, false);
+        UUID itemId = randomUUID();
+        store.assign(List.of(0), PARTITION_COUNT);
+        int partition = store.partitionFor(itemId);
+        store.revoke(List.of(0));
+
+        long generation = store.assign(List.of(partition), PARTITION_COUNT);
+        store.put(itemId, ItemStatus.CANCELLED);
+        assertThat(store.load(itemId, ItemStatus.NEW), equalTo(false));
+        assertThat(store.getStatus(itemId).get(), equalTo(ItemStatus.CANCELLED));
+
+        store.revoke(List.of(partition));
+        long nextGeneration = store.assign(List.of(partition), PARTITION_COUNT);
+        store.loaded(List.of(partition), generation);
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(false));
+        store.loaded(List.of(partition), nextGeneration);
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(true));
+    }
+
+    /**
+     * When the index is full the partition of the item that does not fit is given up, rather than the store answering
+     * that the item is missing.
+     */
+    @Test
+    public void testFull() {
+        ItemStateStore store = new ItemStateStore(true, new ItemIdIndex(16, false, 32));
+        List<Integer> partitions = List.of(0, 1, 2, 3);
+        store.loaded(partitions, store.assign(partitions, PARTITION_COUNT));
+        UUID itemId = randomUUID();
+        while (store.isAuthoritativeFor(itemId)) {
+            itemId = randomUUID();
+            store.put(itemId, ItemStatus.NEW);
+        }
+
+        assertThat(store.getStatus(itemId).isPresent(), equalTo(false));
+        int fullPartition = store.partitionFor(itemId);
+        for (int i=0; i<100; i++) {
+            UUID otherItemId = randomUUID();
+            assertThat(store.isAuthoritativeFor(otherItemId), equalTo(store.partitionFor(otherItemId) != fullPartition));
+        }
+    }
+
+    /**
+     * A create consumed from a partition other than its item id's shows the events are not keyed by item id, so the store
+     * stops answering for any item.
+     */
+    @Test
+    public void testCreateOnOtherPartition() {
+        ItemStateStore store = new ItemStateStore(true, 16, false);
+        List<Integer> partitions = List.of(0, 1, 2, 3);
+        store.loaded(partitions, store.assign(partitions, PARTITION_COUNT));
+        UUID itemId = randomUUID();
+        UUID otherItemId = randomUUID();
+
+        store.checkPartition(itemId, store.partitionFor(itemId));
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(true));
+
+        store.checkPartition(otherItemId, (store.partitionFor(otherItemId) + 1) % PARTITION_COUNT);
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(false));
+        assertThat(store.isAuthoritativeFor(otherItemId), equalTo(false));
+    }
+
+    @Test
+    public void testDisabled() {
+        ItemStateStore store = new ItemStateStore(false, 16, false);
+        UUID itemId = randomUUID();
+
+        store.loaded(List.of(0, 1, 2, 3), store.assign(List.of(0, 1, 2, 3), PARTITION_COUNT));
+        store.load(itemId, ItemStatus.ACTIVE);
+        store.put(itemId, ItemStatus.ACTIVE);
+
+        assertThat(store.isAuthoritativeFor(itemId), equalTo(false));
+        assertThat(store.getStatus(itemId).isPresent(), equalTo(false));
+    }
+}
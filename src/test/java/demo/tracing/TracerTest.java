@@ -0,0 +1,81 @@
+package demo.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import demo.consumer.MessageHeaders;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TracerTest {
+
+    private final List<SpanData> exported = new ArrayList<>();
+
+    /**
+     * An event without a trace context starts a new trace, sampled at the sample rate, and one with a context continues
+     * its trace and sampling decision.
+     */
+    @Test
+    public void testExtract() {
+        final TraceContext sampled = new Tracer(exported::add, 1.0).extract(new RecordHeaders());
+        assertThat(sampled.isSampled(), equalTo(true));
+        assertThat(sampled.getSpanId(), equalTo(0L));
+        assertThat(new Tracer(exported::add, 0.0).extract(new RecordHeaders()).isSampled(), equalTo(false));
+
+        final Headers headers = new RecordHeaders();
+        headers.add(MessageHeaders.TRACE_CONTEXT, new TraceContext(1, 2, true).toBytes());
+        assertThat(new Tracer(exported::add, 0.0).extract(headers), equalTo(new TraceContext(1, 2, true)));
+    }
+
+    /**
+     * Child spans are parented by the current span, and each is exported as it closes.
+     */
+    @Test
+    public void testSpans() {
+        final Tracer tracer = new Tracer(exported::add, 1.0);
+        final TraceContext root = tracer.extract(new RecordHeaders());
+
+        final Span process = tracer.startSpan("process", root);
+        final String value = tracer.trace("deserialize", () -> "event");
+        assertThrows(IllegalStateException.class, () -> tracer.trace("db lookup", () -> { throw new IllegalStateException("timeout"); }));
+        process.close();
+
+        assertThat(value, equalTo("event"));
+        assertThat(exported, hasSize(3));
+        final String processSpanId = TraceContext.toHex(process.getContext().getSpanId());
+        assertThat(exported.get(0).getName(), equalTo("deserialize"));
+        assertThat(exported.get(0).getParentSpanId(), equalTo(processSpanId));
+        assertThat(exported.get(1).getTags().get("error"), startsWith("IllegalStateException"));
+        assertThat(exported.get(2).getSpanId(), equalTo(processSpanId));
+        assertThat(exported.get(2).getParentSpanId(), nullValue());
+        assertThat(exported.get(2).getTraceId(), equalTo(TraceContext.toHex(root.getTraceId())));
+        assertThat(tracer.currentSpan(), nullValue());
+    }
+
+    /**
+     * The context of a trace that is not sampled is still carried on, but none of its spans are exported.
+     */
+    @Test
+    public void testNotSampled() {
+        final Tracer tracer = new Tracer(exported::add, 0.0);
+        final Span process = tracer.startSpan("process", tracer.extract(new RecordHeaders()));
+        final Headers headers = new RecordHeaders();
+        tracer.inject(headers);
+
+        assertThat(tracer.startSpan("db write"), sameInstance(Span.NOOP));
+        process.close();
+
+        assertThat(TraceContext.fromBytes(headers.lastHeader(MessageHeaders.TRACE_CONTEXT).value()).get(), equalTo(process.getContext()));
+        assertThat(exported, hasSize(0));
+        assertThat(tracer.currentSpan(), nullValue());
+    }
+}
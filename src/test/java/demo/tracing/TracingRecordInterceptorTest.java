@@ -0,0 +1,87 @@
+package demo.tracing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import demo.consumer.MessageHeaders;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+public class TracingRecordInterceptorTest {
+
+    private final List<SpanData> exported = new ArrayList<>();
+    private final Consumer<String, String> consumerMock = mockConsumer();
+    private Tracer tracer;
+    private TracingRecordInterceptor interceptor;
+
+    @BeforeEach
+    public void setUp() {
+        tracer = new Tracer(exported::add, 1.0);
+        interceptor = new TracingRecordInterceptor(tracer);
+    }
+
+    /**
+     * The time waiting on the topic and the processing are recorded as children of the previous hop, and the record's
+     * trace context is replaced by the processing span's for the next hop.
+     */
+    @Test
+    public void testIntercept() {
+        final ConsumerRecord<String, String> record = record("update-item-retry-0", System.currentTimeMillis() - 100);
+        record.headers().add(MessageHeaders.TRACE_CONTEXT, new TraceContext(1, 2, true).toBytes());
+
+        interceptor.intercept(record, consumerMock);
+        final TraceContext next = TraceContext.fromBytes(record.headers().lastHeader(MessageHeaders.TRACE_CONTEXT).value()).get();
+        interceptor.failure(record, new RuntimeException("Retry event."), consumerMock);
+        interceptor.afterRecord(record, consumerMock);
+
+        assertThat(record.headers().toArray().length, equalTo(1));
+        assertThat(exported, hasSize(2));
+        assertThat(exported.get(0).getName(), equalTo("wait update-item-retry-0"));
+        assertThat(exported.get(0).getDurationMicros(), greaterThanOrEqualTo(100_000L));
+        assertThat(exported.get(1).getName(), equalTo("process update-item-retry-0"));
+        assertThat(exported.get(1).getTags().get("error"), equalTo("RuntimeException: Retry event."));
+        assertThat(exported.get(1).getSpanId(), equalTo(TraceContext.toHex(next.getSpanId())));
+        exported.forEach(span -> {
+            assertThat(span.getTraceId(), equalTo(TraceContext.toHex(1)));
+            assertThat(span.getParentSpanId(), equalTo(TraceContext.toHex(2)));
+        });
+        assertThat(tracer.currentSpan(), nullValue());
+    }
+
+    /**
+     * A retry delivered before it is due is not traced until redelivered once due.
+     */
+    @Test
+    public void testIntercept_NotDue() {
+        final ConsumerRecord<String, String> record = record("retry", System.currentTimeMillis());
+        record.headers().add(MessageHeaders.RETRY_DUE_TIMESTAMP, String.valueOf(System.currentTimeMillis() + 60000).getBytes(StandardCharsets.UTF_8));
+
+        interceptor.intercept(record, consumerMock);
+
+        assertThat(record.headers().lastHeader(MessageHeaders.TRACE_CONTEXT), nullValue());
+        assertThat(tracer.currentSpan(), nullValue());
+        assertThat(exported, hasSize(0));
+    }
+
+    private static ConsumerRecord<String, String> record(final String topic, final long timestamp) {
+        return new ConsumerRecord<>(topic, 0, 0, timestamp, TimestampType.CREATE_TIME, 0, 0, null, "{}", new RecordHeaders(), Optional.empty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<String, String> mockConsumer() {
+        return mock(Consumer.class);
+    }
+}